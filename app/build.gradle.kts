@@ -1,3 +1,5 @@
+import javax.inject.Inject
+
 plugins {
     alias(libs.plugins.android.application)
 }
@@ -35,9 +37,61 @@ dependencies {
 
     implementation(libs.appcompat)
     implementation(libs.material)
+    implementation(project(":core"))
     implementation(libs.okhttp)
-    implementation(libs.jsoup)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
-}
\ No newline at end of file
+}
+
+// Compiles assets/config.json into the compact config.bin asset read by TrafficConfig.readBinary,
+// so the service does not parse 200 KB of JSON at startup. The writer is TrafficConfig itself, run
+// from :core, so the layout is defined in one place next to the reader.
+abstract class CompileTrafficConfig @Inject constructor(private val execOperations: ExecOperations) : DefaultTask() {
+    @get:InputFile
+    abstract val configJson: RegularFileProperty
+
+    // :core and org.json, which Android provides on the device but the build JVM does not
+    @get:Classpath
+    abstract val compilerClasspath: ConfigurableFileCollection
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun compile() {
+        execOperations.javaexec {
+            classpath = compilerClasspath
+            mainClass.set("com.nemesis.mocktraffic.TrafficConfig")
+            args(configJson.get().asFile.absolutePath, outputDir.file("config.bin").get().asFile.absolutePath)
+        }
+    }
+}
+
+val trafficConfigCompiler: Configuration by configurations.creating {
+    isCanBeConsumed = false
+    isCanBeResolved = true
+    attributes {
+        attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.JAVA_RUNTIME))
+        attribute(Category.CATEGORY_ATTRIBUTE, objects.named(Category.LIBRARY))
+        attribute(LibraryElements.LIBRARY_ELEMENTS_ATTRIBUTE, objects.named(LibraryElements.JAR))
+        attribute(TargetJvmEnvironment.TARGET_JVM_ENVIRONMENT_ATTRIBUTE, objects.named(TargetJvmEnvironment.STANDARD_JVM))
+    }
+}
+
+dependencies {
+    trafficConfigCompiler(project(":core"))
+    trafficConfigCompiler(libs.json)
+}
+
+val compileTrafficConfig = tasks.register<CompileTrafficConfig>("compileTrafficConfig") {
+    configJson.set(layout.projectDirectory.file("src/main/assets/config.json"))
+    compilerClasspath.from(trafficConfigCompiler)
+    outputDir.set(layout.buildDirectory.dir("generated/assets/trafficConfig"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(compileTrafficConfig, CompileTrafficConfig::outputDir)
+    }
+}
@@ -0,0 +1,130 @@
+package com.nemesis.mocktraffic;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+// Watches charging state, battery level, the default network and Doze, and reports every change
+// as a ThrottlePolicy.DeviceState. The listener is called on the main thread for battery and Doze
+// changes and on the connectivity thread for network changes.
+public class DeviceStateMonitor {
+
+    // Receives the device state whenever one of its inputs changes
+    public interface Listener {
+        void onDeviceStateChanged(ThrottlePolicy.DeviceState state);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final ConnectivityManager connectivityManager;
+    private final PowerManager powerManager;
+    private boolean registered = false;
+
+    // Latest values, guarded by this
+    private boolean connected = true;
+    private boolean metered = false;
+    private boolean charging = false;
+    private int batteryPercent = -1;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                updateBattery(intent);
+            }
+            publish(); // Battery, Doze or battery saver changed
+        }
+    };
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            synchronized (DeviceStateMonitor.this) {
+                connected = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+                metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            }
+            publish();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            synchronized (DeviceStateMonitor.this) {
+                connected = false;
+            }
+            publish();
+        }
+    };
+
+    public DeviceStateMonitor(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.connectivityManager = (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    // Start watching; the current state is published right away
+    public synchronized void start() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+        }
+        Intent battery = context.registerReceiver(receiver, filter); // ACTION_BATTERY_CHANGED is sticky
+        if (battery != null) {
+            updateBattery(battery);
+        }
+        if (connectivityManager != null) {
+            try {
+                connectivityManager.registerDefaultNetworkCallback(networkCallback); // Reports the current network at once
+            } catch (RuntimeException e) {
+                Log.e("TrafficService", "Cannot watch the network state", e);
+            }
+        }
+        publish();
+    }
+
+    public synchronized void stop() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        context.unregisterReceiver(receiver);
+        if (connectivityManager != null) {
+            try {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            } catch (RuntimeException e) {
+                Log.e("TrafficService", "Network callback was not registered", e);
+            }
+        }
+    }
+
+    private synchronized void updateBattery(Intent intent) {
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        batteryPercent = level >= 0 && scale > 0 ? level * 100 / scale : -1;
+    }
+
+    private void publish() {
+        ThrottlePolicy.DeviceState state;
+        synchronized (this) {
+            boolean deviceIdle = powerManager != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && powerManager.isDeviceIdleMode();
+            boolean powerSave = powerManager != null && powerManager.isPowerSaveMode();
+            state = new ThrottlePolicy.DeviceState(connected, metered, charging, batteryPercent, deviceIdle, powerSave);
+        }
+        listener.onDeviceStateChanged(state);
+    }
+}
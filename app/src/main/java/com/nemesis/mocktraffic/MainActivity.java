@@ -3,13 +3,18 @@ package com.nemesis.mocktraffic;
 import android.Manifest;
 import android.app.AlertDialog;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.provider.Settings;
 import android.widget.CheckBox;
@@ -25,10 +30,48 @@ public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_POST_NOTIFICATIONS = 1;
     private static final int REQUEST_IGNORE_BATTERY_OPTIMIZATIONS = 2;
+    private static final long PERSIST_DELAY_MS = 10000; // Write the request count to disk at most every 10 seconds
+    private static final long DASHBOARD_INTERVAL_MS = 500; // Refresh the live dashboard twice a second
 
     private CheckBox trafficCheckBox;
     private TextView trafficStatsTextView;
     private TextView statusTextView;
+    private TextView dashboardTextView;
+
+    private final Handler persistHandler = new Handler(Looper.getMainLooper());
+    private int latestRequestCount = -1; // Most recent count not yet written to SharedPreferences
+    private final Handler dashboardHandler = new Handler(Looper.getMainLooper());
+    private TrafficService.StatsBinder statsBinder; // Set while bound to a running service
+    private TrafficStats previousStats; // Reading the next refresh is compared with
+
+    // Bound without BIND_AUTO_CREATE, so this connects whenever the service runs but never starts it
+    private final ServiceConnection statsConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            statsBinder = (TrafficService.StatsBinder) service;
+            previousStats = null;
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            statsBinder = null;
+        }
+    };
+
+    private final Runnable dashboardRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshDashboard();
+            dashboardHandler.postDelayed(this, DASHBOARD_INTERVAL_MS);
+        }
+    };
+
+    private final Runnable persistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            persistRequestCount();
+        }
+    };
 
     private BroadcastReceiver statsReceiver = new BroadcastReceiver() {
         @Override
@@ -37,15 +80,43 @@ public class MainActivity extends AppCompatActivity {
                 int requestCount = intent.getIntExtra("requestCount", 0);
                 trafficStatsTextView.setText("Traffic Stats: " + requestCount + " requests");
 
-                // Save request count to SharedPreferences
-                SharedPreferences preferences = getSharedPreferences("app_prefs", MODE_PRIVATE);
-                SharedPreferences.Editor editor = preferences.edit();
-                editor.putInt("request_count", requestCount);
-                editor.apply();
+                // Save request count to SharedPreferences, debounced so bursts of updates cost one write
+                boolean persistPending = latestRequestCount >= 0;
+                latestRequestCount = requestCount;
+                if (!persistPending) {
+                    persistHandler.postDelayed(persistRunnable, PERSIST_DELAY_MS);
+                }
             }
         }
     };
 
+    // Show the rates of the last interval; polling the binder costs the service nothing per request
+    private void refreshDashboard() {
+        TrafficStats stats = statsBinder != null ? statsBinder.getStats() : null;
+        if (stats == null) {
+            previousStats = null;
+            dashboardTextView.setText("");
+            return;
+        }
+        if (previousStats != null) {
+            dashboardTextView.setText(stats.describeSince(previousStats));
+        }
+        previousStats = stats;
+    }
+
+    // Save the latest request count to SharedPreferences if one is pending
+    private void persistRequestCount() {
+        persistHandler.removeCallbacks(persistRunnable);
+        if (latestRequestCount < 0) {
+            return;
+        }
+        SharedPreferences preferences = getSharedPreferences("app_prefs", MODE_PRIVATE);
+        SharedPreferences.Editor editor = preferences.edit();
+        editor.putInt("request_count", latestRequestCount);
+        editor.apply();
+        latestRequestCount = -1;
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -55,6 +126,7 @@ public class MainActivity extends AppCompatActivity {
         trafficCheckBox = findViewById(R.id.trafficCheckBox);
         trafficStatsTextView = findViewById(R.id.trafficStatsTextView);
         statusTextView = findViewById(R.id.statusTextView);
+        dashboardTextView = findViewById(R.id.dashboardTextView);
 
         // Restore saved traffic generation setting
         SharedPreferences preferences = getSharedPreferences("app_prefs", MODE_PRIVATE);
@@ -129,6 +201,8 @@ public class MainActivity extends AppCompatActivity {
         } else {
             registerReceiver(statsReceiver, filter); // Older versions
         }
+        bindService(new Intent(this, TrafficService.class), statsConnection, 0);
+        dashboardHandler.post(dashboardRunnable);
     }
 
     @Override
@@ -136,6 +210,11 @@ public class MainActivity extends AppCompatActivity {
         super.onPause();
         // Unregister the receiver to prevent leaks
         unregisterReceiver(statsReceiver);
+        dashboardHandler.removeCallbacks(dashboardRunnable);
+        unbindService(statsConnection);
+        statsBinder = null;
+        previousStats = null;
+        persistRequestCount(); // Do not lose a pending count when leaving the screen
     }
 
     // Handle the result of permission requests
@@ -7,6 +7,7 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
 import android.content.res.AssetManager;
+import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
@@ -15,26 +16,26 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import okhttp3.Dns;
 
 public class TrafficService extends Service {
 
@@ -44,29 +45,48 @@ public class TrafficService extends Service {
 
     // Broadcast Action
     public static final String ACTION_UPDATE_STATS = "com.nemesis.mocktraffic.ACTION_UPDATE_STATS";
+    // Service action that writes the current metrics to files/metrics.json
+    public static final String ACTION_DUMP_METRICS = "com.nemesis.mocktraffic.ACTION_DUMP_METRICS";
+    public static final String METRICS_FILE_NAME = "metrics.json";
+    // Service action that applies files/config_override.json on top of the bundled configuration
+    // while traffic keeps flowing, or only stores it for the next start when traffic is off;
+    // EXTRA_CONFIG_JSON, if given, first replaces that file
+    public static final String ACTION_RELOAD_CONFIG = "com.nemesis.mocktraffic.ACTION_RELOAD_CONFIG";
+    public static final String EXTRA_CONFIG_JSON = "configJson";
+    public static final String CONFIG_OVERRIDE_FILE_NAME = "config_override.json";
 
     // State variables
-    private boolean isTrafficEnabled = true; // Service is started only when traffic is enabled
-    private int requestCount = 0;
-    private List<String> urlsToVisit = new ArrayList<>();
-    private List<String> blacklistedUrls = new ArrayList<>();
-    private int maxDepth = 5;
-    private int minSleep = 2000; // in milliseconds
-    private int maxSleep = 5000; // in milliseconds
-    private int timeout = 60000; // 60 seconds timeout
-    private Handler trafficHandler = new Handler();
+    private final LongAdder requestCount = new LongAdder();
+    private final TrafficMetrics metrics = new TrafficMetrics();
+    private final StatsPublisher statsPublisher = new StatsPublisher(requestCount, new StatsPublisher.Sink() {
+        @Override
+        public void publish(long count) {
+            broadcastStats(count);
+        }
+    }, StatsPublisher.DEFAULT_INTERVAL_MS);
+    private volatile TrafficEngine engine; // Set by the background loader before any session starts
+    private volatile TrafficConfig bundledConfig; // The asset configuration that overrides apply to
+    private FutureTask<TrafficEngine> engineLoader;
+    private CrawlStateStore crawlState; // Saved frontier, restored in the background on start
+    private DeviceStateMonitor deviceStateMonitor; // Throttles traffic by battery, network and Doze state; guarded by trafficLock
+    private volatile ScheduledExecutorService sessionExecutor; // Written under trafficLock
+    private final Object trafficLock = new Object(); // Makes starting the sessions and stopping traffic mutually exclusive
     private Handler logCleanerHandler = new Handler();
-    private OkHttpClient httpClient = new OkHttpClient();
-    private Random random = new Random();
+    private final StatsBinder statsBinder = new StatsBinder();
+    private final Object metricsFileLock = new Object();
 
     private static final int LOG_CLEAN_INTERVAL = 30000; // Clean the log every 30 seconds
+    private static final int METRICS_DUMP_INTERVAL = 30000; // Write metrics.json every 30 seconds
+    private static final String CRAWL_STATE_FILE_NAME = "crawl_state.bin";
+    private static final String HTTP_CACHE_DIR_NAME = "http_cache";
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d("TrafficService", "Service created.");
         createNotificationChannel();
-        loadConfigFromAssets(); // Load config when service is created
+        crawlState = new CrawlStateStore(new File(getFilesDir(), CRAWL_STATE_FILE_NAME));
+        startEngineLoader(); // Load config in the background when service is created
     }
 
     // Create the notification channel for Android O and above
@@ -113,6 +133,42 @@ public class TrafficService extends Service {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d("TrafficService", "onStartCommand called.");
+        if (intent != null && ACTION_DUMP_METRICS.equals(intent.getAction())) {
+            // A dump request must not turn traffic generation on
+            if (!runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    dumpMetrics();
+                }
+            })) {
+                Log.d("TrafficService", "Traffic generation is not running; no metrics to dump.");
+                stopSelf(startId);
+                return START_NOT_STICKY;
+            }
+            return START_STICKY;
+        }
+        if (intent != null && ACTION_RELOAD_CONFIG.equals(intent.getAction())) {
+            final String overrideJson = intent.getStringExtra(EXTRA_CONFIG_JSON);
+            if (runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    reloadConfig(overrideJson);
+                }
+            })) {
+                return START_STICKY;
+            }
+            // Not running: only store the override for the next start, then go away again
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reloadConfig(overrideJson);
+                    stopSelf(startId);
+                }
+            }, "TrafficConfigWriter");
+            writer.start();
+            return START_NOT_STICKY;
+        }
+
         // Start as foreground service
         Notification notification = buildNotification();
         startForeground(NOTIFICATION_ID, notification);
@@ -132,96 +188,224 @@ public class TrafficService extends Service {
         Log.d("TrafficService", "Service destroyed.");
     }
 
+    // Local binder through which an activity in this process polls the traffic counters
+    public class StatsBinder extends Binder {
+        // Current counters, or null while traffic generation is stopped
+        @Nullable
+        public TrafficStats getStats() {
+            if (sessionExecutor == null) {
+                return null;
+            }
+            return TrafficStats.capture(metrics, engine);
+        }
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
-        return null; // Binding not used
+        return statsBinder; // Binding only reads stats; it neither starts nor keeps the traffic running
+    }
+
+    // Run task on the session executor if traffic generation is running; false otherwise
+    private boolean runInBackground(Runnable task) {
+        ScheduledExecutorService executor = sessionExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return false;
+        }
+        executor.execute(task);
+        return true;
     }
 
     // Method to start traffic generation
     private void startTraffic() {
-        if (urlsToVisit.isEmpty()) {
+        synchronized (trafficLock) {
+            if (sessionExecutor != null) {
+                return; // Already running; onStartCommand can be delivered more than once
+            }
+
+            // Sessions only enqueue calls, so a few scheduler threads can drive many of them
+            int schedulerThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(schedulerThreads);
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+            sessionExecutor = executor;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    launchSessions();
+                }
+            });
+        }
+        scheduleLogCleaning(); // Start log cleaning
+    }
+
+    // Wait for the configuration off the main thread, then start the browsing sessions.
+    // The start runs under trafficLock, so stopTraffic either comes first and this returns, or comes
+    // after and finds the monitor registered and every task scheduled, ready to be torn down.
+    private void launchSessions() {
+        TrafficEngine loaded = awaitEngine();
+        if (loaded == null || loaded.getFrontier().isEmpty()) {
             Log.e("TrafficService", "No URLs to visit. Check config.json");
             stopSelf(); // Stop service if no URLs are available
             return;
         }
+        synchronized (trafficLock) {
+            ScheduledExecutorService executor = sessionExecutor;
+            if (executor == null || executor.isShutdown()) {
+                return; // Stopped while the configuration was loading
+            }
 
-        trafficHandler.post(trafficRunnable); // Start the traffic generation loop
-        scheduleLogCleaning(); // Start log cleaning
-        Log.d("TrafficService", "Traffic generation started.");
+            loaded.start(executor);
+            statsPublisher.start(executor); // Publish aggregated stats once per interval
+            deviceStateMonitor = new DeviceStateMonitor(this, new DeviceStateMonitor.Listener() {
+                @Override
+                public void onDeviceStateChanged(ThrottlePolicy.DeviceState state) {
+                    applyThrottle(state);
+                }
+            });
+            deviceStateMonitor.start();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    dumpMetrics();
+                }
+            }, METRICS_DUMP_INTERVAL, METRICS_DUMP_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        Log.d("TrafficService", "Traffic generation started with " + loaded.getConfig().sessionCount + " sessions.");
+    }
+
+    // Scale request rate, concurrency and DNS noise to the device state
+    private void applyThrottle(ThrottlePolicy.DeviceState state) {
+        TrafficEngine current = engine;
+        if (current == null) {
+            return;
+        }
+        double factor = current.applyDeviceState(state);
+        if (factor >= 0) {
+            Log.d("TrafficService", "Throttle set to " + factor + " for " + state);
+        }
     }
 
     // Method to stop traffic generation
     private void stopTraffic() {
-        trafficHandler.removeCallbacks(trafficRunnable); // Stop traffic generation loop
+        synchronized (trafficLock) {
+            if (deviceStateMonitor != null) {
+                deviceStateMonitor.stop();
+                deviceStateMonitor = null;
+            }
+            statsPublisher.stop();
+            statsPublisher.publishIfChanged(); // Flush the final count
+            final TrafficEngine current = engine;
+            if (current != null) {
+                current.stop(); // Abandon in-flight requests
+            }
+            ScheduledExecutorService executor = sessionExecutor;
+            sessionExecutor = null;
+            if (executor != null) {
+                // Save state on the scheduler rather than the main thread; shutdown() still runs this
+                // task but drops every delayed one, which stops all browsing sessions
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (current != null) {
+                            current.saveState();
+                        }
+                        dumpMetrics();
+                    }
+                });
+                executor.shutdown();
+            }
+        }
         logCleanerHandler.removeCallbacksAndMessages(null); // Stop log cleaning
         Log.d("TrafficService", "Traffic generation stopped.");
     }
 
-    // Runnable that handles traffic generation by crawling and making HTTP requests
-    private Runnable trafficRunnable = new Runnable() {
-        @Override
-        public void run() {
-            Log.d("TrafficService", "Traffic runnable started. URLs to visit: " + urlsToVisit.size());
-            if (isTrafficEnabled && !urlsToVisit.isEmpty()) {
-                String urlToVisit = urlsToVisit.get(random.nextInt(urlsToVisit.size()));
-                Log.d("TrafficService", "Visiting URL: " + urlToVisit);
-                makeHttpRequest(urlToVisit);
-
-                // Schedule the next traffic request after a random delay
-                int sleepTime = random.nextInt(maxSleep - minSleep + 1) + minSleep;
-                trafficHandler.postDelayed(this, sleepTime);
-            } else {
-                Log.d("TrafficService", "Traffic generation stopped or no URLs to visit.");
-                stopSelf(); // Stop the service if traffic is disabled or no URLs
-            }
+    // Validate and store a new override, then hand it to the engine; call from a background thread.
+    // A running engine switches over while the crawl continues, one not yet started starts with it.
+    private void reloadConfig(String overrideJson) {
+        TrafficEngine current = awaitEngine();
+        if (current == null) {
+            return;
         }
-    };
-
-    // Method to make an HTTP request to a given URL
-    private void makeHttpRequest(final String url) {
-        if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            Log.e("TrafficService", "Invalid URL scheme: " + url);
-            return; // Skip this URL since it's not an HTTP/HTTPS URL
+        TrafficConfig reloaded;
+        try {
+            reloaded = overrideJson != null ? bundledConfig.withOverrides(overrideJson) : applyOverride(bundledConfig);
+        } catch (JSONException e) {
+            Log.e("TrafficService", "Invalid configuration override, keeping the current configuration", e);
+            return;
         }
+        if (overrideJson != null && !writeOverride(overrideJson)) {
+            return;
+        }
+        current.reconfigure(reloaded);
+        Log.d("TrafficService", "Configuration reloaded.");
+    }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
-
-        httpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e("TrafficService", "Failed to load URL: " + url, e);
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    requestCount++; // Increment request count on success
-                    broadcastStats(); // Broadcast the updated stats
-                    Log.d("TrafficService", "Visited URL: " + url + " | Status: " + response.code());
-
-                    // Extract URLs from the response body and add to visit list
-                    String body = response.body().string();
-                    List<String> extractedUrls = extractUrlsFromBody(body, url);
-                    synchronized (urlsToVisit) {
-                        urlsToVisit.addAll(extractedUrls); // Add extracted URLs to the list
-                    }
-                } else {
-                    Log.e("TrafficService", "Failed to visit URL: " + url + " | Status: " + response.code());
-                }
+    // The bundled configuration with files/config_override.json applied, if there is one
+    private TrafficConfig applyOverride(TrafficConfig bundled) throws JSONException {
+        File file = new File(getFilesDir(), CONFIG_OVERRIDE_FILE_NAME);
+        if (!file.exists()) {
+            return bundled;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                stringBuilder.append(line);
             }
-        });
+        } catch (IOException e) {
+            Log.e("TrafficService", "Error reading " + CONFIG_OVERRIDE_FILE_NAME, e);
+            return bundled;
+        }
+        return bundled.withOverrides(stringBuilder.toString());
     }
 
+    // Store an override so that it also applies after a restart, replacing the previous one atomically
+    private boolean writeOverride(String overrideJson) {
+        File target = new File(getFilesDir(), CONFIG_OVERRIDE_FILE_NAME);
+        File temp = new File(getFilesDir(), CONFIG_OVERRIDE_FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(overrideJson.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e("TrafficService", "Error writing " + CONFIG_OVERRIDE_FILE_NAME, e);
+            return false;
+        }
+        if (!temp.renameTo(target)) {
+            Log.e("TrafficService", "Error replacing " + CONFIG_OVERRIDE_FILE_NAME);
+            return false;
+        }
+        return true;
+    }
 
-    // Broadcast the updated stats
-    private void broadcastStats() {
+    // Broadcast the updated stats; called by statsPublisher at most once per interval
+    private void broadcastStats(long count) {
         Intent intent = new Intent(ACTION_UPDATE_STATS);
-        intent.putExtra("requestCount", requestCount);
+        intent.setPackage(getPackageName()); // Only our own activity listens
+        intent.putExtra("requestCount", (int) count);
         sendBroadcast(intent);
-        Log.d("TrafficService", "Broadcasted stats: " + requestCount);
+        Log.d("TrafficService", "Broadcasted stats: " + count);
+    }
+
+    // Write the metrics as JSON to app storage, replacing the previous dump atomically. The executor
+    // has several threads, so dumps are serialized here to keep them from sharing the temp file.
+    private void dumpMetrics() {
+        synchronized (metricsFileLock) {
+            writeMetricsFile();
+        }
+    }
+
+    private void writeMetricsFile() {
+        File target = new File(getFilesDir(), METRICS_FILE_NAME);
+        File temp = new File(getFilesDir(), METRICS_FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(metrics.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e("TrafficService", "Error writing " + METRICS_FILE_NAME, e);
+            return;
+        }
+        if (!temp.renameTo(target)) {
+            Log.e("TrafficService", "Error replacing " + METRICS_FILE_NAME);
+        }
     }
 
     // Clean the log periodically (if logging to a file or similar)
@@ -236,88 +420,93 @@ public class TrafficService extends Service {
         }, LOG_CLEAN_INTERVAL);
     }
 
-    // Load config.json file and populate urlsToVisit and blacklistedUrls
-    private void loadConfigFromAssets() {
-        String jsonString = null;
-        try {
-            AssetManager assetManager = getAssets();
-            InputStream inputStream = assetManager.open("config.json");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            StringBuilder stringBuilder = new StringBuilder();
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line);
+    // Start loading the configuration on a background thread so that onCreate returns immediately
+    private void startEngineLoader() {
+        engineLoader = new FutureTask<>(new Callable<TrafficEngine>() {
+            @Override
+            public TrafficEngine call() throws Exception {
+                bundledConfig = loadConfigFromAssets();
+                TrafficConfig loaded;
+                try {
+                    loaded = applyOverride(bundledConfig);
+                } catch (JSONException e) {
+                    Log.e("TrafficService", "Ignoring invalid " + CONFIG_OVERRIDE_FILE_NAME, e);
+                    loaded = bundledConfig;
+                }
+                return createEngine(loaded);
             }
-            jsonString = stringBuilder.toString();
-            reader.close();
-
-            // Parse the JSON config file
-            parseJsonConfig(jsonString);
-            Log.d("TrafficService", "Configuration loaded successfully.");
-
-        } catch (IOException e) {
-            Log.e("TrafficService", "Error reading config.json", e);
-            stopSelf(); // Stop service if config cannot be loaded
-        }
+        });
+        Thread loaderThread = new Thread(engineLoader, "TrafficConfigLoader");
+        loaderThread.setPriority(Thread.MIN_PRIORITY);
+        loaderThread.start();
     }
 
-    // Parse the configuration JSON and populate urlsToVisit and blacklistedUrls
-    private void parseJsonConfig(String jsonString) {
+    // Block the calling background thread until the engine is ready; null if the configuration failed to load
+    private TrafficEngine awaitEngine() {
         try {
-            JSONObject jsonObject = new JSONObject(jsonString);
-
-            JSONArray rootUrls = jsonObject.getJSONArray("root_urls");
-            JSONArray blacklistedUrlsJson = jsonObject.getJSONArray("blacklisted_urls");
-
-            for (int i = 0; i < rootUrls.length(); i++) {
-                urlsToVisit.add(rootUrls.getString(i)); // Add URLs from config to visit list
-            }
-
-            for (int i = 0; i < blacklistedUrlsJson.length(); i++) {
-                blacklistedUrls.add(blacklistedUrlsJson.getString(i)); // Add blacklisted URLs
-            }
-
-            // Update additional configurations
-            maxDepth = jsonObject.getInt("max_depth");
-            minSleep = jsonObject.getInt("min_sleep");
-            maxSleep = jsonObject.getInt("max_sleep");
-            timeout = jsonObject.optInt("timeout", 60000); // Default to 60 seconds if not provided
-
-            Log.d("TrafficService", "Parsed config.json: " + jsonObject.toString());
-
-        } catch (JSONException e) {
-            Log.e("TrafficService", "Error parsing config.json", e);
-            stopSelf(); // Stop service if config cannot be parsed
+            return engineLoader.get();
+        } catch (ExecutionException e) {
+            Log.e("TrafficService", "Error loading configuration", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return null;
     }
 
-    // Extract URLs from the HTML response using Jsoup
-    private List<String> extractUrlsFromBody(String body, String rootUrl) {
-        List<String> extractedUrls = new ArrayList<>();
+    // Load the compiled config.bin, falling back to config.json
+    private TrafficConfig loadConfigFromAssets() throws IOException, JSONException {
+        AssetManager assetManager = getAssets();
+        TrafficConfig loaded;
+        InputStream binaryStream = null;
         try {
-            Document doc = Jsoup.parse(body, rootUrl);
-            Elements links = doc.select("a[href]"); // Select all <a> tags with href attributes
-
-            for (org.jsoup.nodes.Element link : links) {
-                String absoluteUrl = link.absUrl("href"); // Get absolute URLs
-                if (!absoluteUrl.isEmpty() && !urlsToVisit.contains(absoluteUrl) && !isBlacklisted(absoluteUrl)) {
-                    extractedUrls.add(absoluteUrl); // Add valid URLs to the list
+            binaryStream = assetManager.open(TrafficConfig.BINARY_ASSET);
+        } catch (IOException e) {
+            Log.w("TrafficService", TrafficConfig.BINARY_ASSET + " not found, parsing " + TrafficConfig.JSON_ASSET);
+        }
+        if (binaryStream != null) {
+            try (InputStream inputStream = new BufferedInputStream(binaryStream)) {
+                loaded = TrafficConfig.readBinary(inputStream);
+            }
+        } else {
+            StringBuilder stringBuilder = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(assetManager.open(TrafficConfig.JSON_ASSET)))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    stringBuilder.append(line);
                 }
             }
-        } catch (Exception e) {
-            Log.e("TrafficService", "Failed to extract URLs", e);
+            loaded = TrafficConfig.fromJson(stringBuilder.toString());
         }
-        return extractedUrls;
+        Log.d("TrafficService", "Configuration loaded successfully: " + loaded.rootUrls.size() + " root URLs, "
+                + loaded.blacklistedUrls.size() + " blacklist rules.");
+        return loaded;
     }
 
-    // Check if a URL is blacklisted
-    private boolean isBlacklisted(String url) {
-        for (String blacklistedUrl : blacklistedUrls) {
-            if (url.contains(blacklistedUrl)) {
-                return true;
-            }
-        }
-        return false;
+    // Build the crawl engine for the loaded configuration, logging to logcat and reporting to this service
+    private TrafficEngine createEngine(TrafficConfig loaded) {
+        TrafficEngine created = new TrafficEngine(loaded, metrics, Dns.SYSTEM, new File(getCacheDir(), HTTP_CACHE_DIR_NAME), crawlState,
+                new TrafficEngine.Logger() {
+                    @Override
+                    public void debug(String message) {
+                        Log.d("TrafficService", message);
+                    }
+
+                    @Override
+                    public void error(String message, Throwable error) {
+                        Log.e("TrafficService", message, error);
+                    }
+                }, new TrafficEngine.Listener() {
+                    @Override
+                    public void onRequestSucceeded() {
+                        requestCount.increment(); // Increment request count on success
+                    }
+
+                    @Override
+                    public void onFrontierExhausted() {
+                        stopSelf(); // Stop the service once there is nothing left to visit
+                    }
+                });
+        engine = created;
+        return created;
     }
 }
@@ -0,0 +1,30 @@
+// JMH benchmarks for the crawl hot path in :core. Run with ./gradlew :benchmark:jmh;
+// results, including the gc profiler's allocation rate, go to build/results/jmh/results.txt.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(libs.json) // Provided by Android on the device
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc") // Reports gc.alloc.rate and gc.alloc.rate.norm next to the throughput
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("TEXT")
+}
+
+// Benchmark the real configuration the app ships, blacklist and all
+tasks.named<ProcessResources>("processJmhResources") {
+    from(rootProject.file("app/src/main/assets/config.json"))
+}
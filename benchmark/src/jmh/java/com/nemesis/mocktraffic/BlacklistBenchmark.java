@@ -0,0 +1,67 @@
+package com.nemesis.mocktraffic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// isBlacklisted over every link of the corpus, against the shipped blacklist.
+// Scores are per URL; naiveContains is the String.contains loop the matcher replaced.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlacklistBenchmark {
+
+    private static final int URL_COUNT = 1024;
+
+    private String[] urls;
+    private List<String> rules;
+    private BlacklistMatcher matcher;
+
+    @Setup
+    public void setUp() throws IOException {
+        TrafficConfig config = TrafficConfig.fromJson(Corpus.configJson());
+        rules = config.blacklistedUrls;
+        matcher = config.buildBlacklistMatcher();
+        List<String> links = Corpus.allLinks();
+        urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            urls[i] = links.get(i % links.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URL_COUNT)
+    public int matcher() {
+        int matches = 0;
+        for (String url : urls) {
+            if (matcher.matches(url)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URL_COUNT)
+    public int naiveContains() {
+        int matches = 0;
+        for (String url : urls) {
+            for (String rule : rules) {
+                if (url.contains(rule)) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+}
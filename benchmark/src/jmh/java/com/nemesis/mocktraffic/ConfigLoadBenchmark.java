@@ -0,0 +1,57 @@
+package com.nemesis.mocktraffic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Startup cost of the configuration: parsing config.json versus reading the compiled config.bin,
+// plus compiling the blacklist and seeding the frontier as loadConfigFromAssets does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigLoadBenchmark {
+
+    private String json;
+    private byte[] binary;
+    private TrafficConfig config;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Corpus.configJson();
+        binary = Corpus.compileConfig(json);
+        config = TrafficConfig.readBinary(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public TrafficConfig parseJson() {
+        return TrafficConfig.fromJson(json);
+    }
+
+    @Benchmark
+    public TrafficConfig readBinary() throws IOException {
+        return TrafficConfig.readBinary(new ByteArrayInputStream(binary));
+    }
+
+    @Benchmark
+    public BlacklistMatcher buildBlacklistMatcher() {
+        return config.buildBlacklistMatcher();
+    }
+
+    @Benchmark
+    public UrlFrontier seedFrontier() {
+        UrlFrontier frontier = new UrlFrontier(config.frontierCapacity);
+        for (String rootUrl : config.rootUrls) {
+            frontier.add(rootUrl, 0, ThreadLocalRandom.current());
+        }
+        return frontier;
+    }
+}
@@ -0,0 +1,60 @@
+package com.nemesis.mocktraffic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okio.Buffer;
+
+// Fixed inputs shared by the benchmarks: the HTML pages under corpus/ and the app's real config.json
+final class Corpus {
+
+    static final String[] PAGES = {"small.html", "article.html", "portal.html"};
+    static final HttpUrl BASE_URL = HttpUrl.get("https://www.example.com/news/index.html");
+
+    private Corpus() {
+    }
+
+    static byte[] resource(String name) throws IOException {
+        try (InputStream in = Corpus.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing benchmark resource " + name);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    static byte[] page(String name) throws IOException {
+        return resource("corpus/" + name);
+    }
+
+    static String configJson() throws IOException {
+        return new String(resource(TrafficConfig.JSON_ASSET), StandardCharsets.UTF_8);
+    }
+
+    // Every link of every page, as the streaming extractor resolves them
+    static List<String> allLinks() throws IOException {
+        List<String> links = new ArrayList<>();
+        for (String page : PAGES) {
+            links.addAll(LinkExtractor.extractStreaming(new Buffer().write(page(page)), BASE_URL, Long.MAX_VALUE, Integer.MAX_VALUE));
+        }
+        return links;
+    }
+
+    // Compile config.json with the writer the app's compileTrafficConfig Gradle task runs
+    static byte[] compileConfig(String json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TrafficConfig.writeBinary(json, bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+package com.nemesis.mocktraffic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Frontier insert and sample at the default capacity, kept full so that every insert also evicts.
+// The shared frontier is driven from four threads, like callbacks and sessions on the device.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class FrontierBenchmark {
+
+    private static final int HOSTS = 200;
+
+    private UrlFrontier frontier;
+    private HostScheduler scheduler;
+
+    // Per-thread source of URLs that have not been added yet
+    @State(Scope.Thread)
+    public static class Urls {
+        private final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        private long next = ThreadLocalRandom.current().nextLong(1L << 40);
+
+        String nextUrl() {
+            return "https://host" + random.nextInt(HOSTS) + ".example/page/" + next++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        frontier = new UrlFrontier(UrlFrontier.DEFAULT_CAPACITY);
+        Random random = new Random(1);
+        for (int i = 0; i < UrlFrontier.DEFAULT_CAPACITY; i++) {
+            frontier.add("https://host" + random.nextInt(HOSTS) + ".example/seed/" + i, 0, random);
+        }
+        scheduler = new HostScheduler(frontier, Integer.MAX_VALUE, Integer.MAX_VALUE); // Never throttles
+    }
+
+    @Benchmark
+    public boolean add(Urls urls) {
+        return frontier.add(urls.nextUrl(), 1, ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public boolean addDuplicate() {
+        return frontier.add("https://host0.example/seed/0", 1, ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public UrlFrontier.Entry randomEntry() {
+        return frontier.randomEntry(ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public UrlFrontier.Entry schedulerNext() {
+        return scheduler.next(ThreadLocalRandom.current());
+    }
+}
@@ -0,0 +1,47 @@
+package com.nemesis.mocktraffic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+// extractUrlsFromBody's two extraction paths over fixed pages, with the budgets of the shipped config
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LinkExtractionBenchmark {
+
+    @Param({"small.html", "article.html", "portal.html"})
+    public String page;
+
+    private byte[] body;
+    private TrafficConfig config;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = Corpus.page(page);
+        config = TrafficConfig.fromJson(Corpus.configJson());
+    }
+
+    @Benchmark
+    public List<String> streaming() throws IOException {
+        return LinkExtractor.extractStreaming(new Buffer().write(body), Corpus.BASE_URL, config.maxBodyBytes, config.maxLinksPerPage);
+    }
+
+    @Benchmark
+    public List<String> jsoup() {
+        // Includes decoding the body, as ResponseBody.string() does on the device
+        return LinkExtractor.extractWithJsoup(new String(body, StandardCharsets.UTF_8), Corpus.BASE_URL.toString(), config.maxLinksPerPage);
+    }
+}
@@ -0,0 +1,18 @@
+// Crawl logic with no Android dependencies, shared by the app and the JVM benchmarks
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    api(libs.okhttp)
+    implementation(libs.jsoup)
+    compileOnly(libs.json) // Part of the Android platform; JVM users add it themselves
+    testImplementation(libs.junit)
+    testImplementation(libs.json)
+    testImplementation(libs.mockwebserver)
+}
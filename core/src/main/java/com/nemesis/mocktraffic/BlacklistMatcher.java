@@ -0,0 +1,210 @@
+package com.nemesis.mocktraffic;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Blacklist compiled once at load time so that checking a URL costs time linear in the URL length,
+// whatever the size of the blacklist.
+// - Substring rules (blacklisted_urls) are compiled into an Aho-Corasick automaton, matching the
+//   semantics of url.contains(entry) for every entry.
+// - Host rules (blacklisted_hosts) are stored in a trie of reversed host labels, so that "example.com"
+//   matches example.com and any of its subdomains.
+public class BlacklistMatcher {
+
+    private final boolean matchesEverything; // An empty substring rule is contained in every URL
+
+    // Aho-Corasick automaton, fully expanded into a DFA over the characters used by the rules.
+    // Column 0 stands for any character that does not appear in a rule.
+    private final char[] alphabet;
+    private final int[] asciiSymbols = new int[128];
+    private final int width;
+    private final int[] transitions;
+    private final boolean[] accepting;
+
+    private final HostNode hostRoot = new HostNode();
+    private final boolean hasHostRules;
+
+    private static class HostNode {
+        final Map<String, HostNode> children = new HashMap<>();
+        boolean terminal;
+    }
+
+    public BlacklistMatcher(Collection<String> substrings, Collection<String> hosts) {
+        boolean empty = false;
+        TreeSet<Character> chars = new TreeSet<>();
+        int totalLength = 0;
+        for (String substring : substrings) {
+            if (substring.isEmpty()) {
+                empty = true;
+            }
+            for (int i = 0; i < substring.length(); i++) {
+                chars.add(substring.charAt(i));
+            }
+            totalLength += substring.length();
+        }
+        matchesEverything = empty;
+
+        alphabet = new char[chars.size()];
+        int symbol = 0;
+        for (char c : chars) {
+            alphabet[symbol++] = c;
+        }
+        for (int i = 0; i < alphabet.length; i++) {
+            if (alphabet[i] < 128) {
+                asciiSymbols[alphabet[i]] = i + 1;
+            }
+        }
+        width = alphabet.length + 1;
+
+        // Build the keyword trie, leaving missing edges as -1
+        int maxStates = totalLength + 1;
+        int[] trie = new int[maxStates * width];
+        Arrays.fill(trie, -1);
+        boolean[] terminal = new boolean[maxStates];
+        int stateCount = 1;
+        for (String substring : substrings) {
+            int state = 0;
+            for (int i = 0; i < substring.length(); i++) {
+                int edge = state * width + symbolOf(substring.charAt(i));
+                if (trie[edge] == -1) {
+                    trie[edge] = stateCount++;
+                }
+                state = trie[edge];
+            }
+            terminal[state] = true;
+        }
+
+        // Breadth-first pass to compute failure links and fill in every missing edge
+        transitions = Arrays.copyOf(trie, stateCount * width);
+        accepting = Arrays.copyOf(terminal, stateCount);
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 0; a < width; a++) {
+            int next = transitions[a];
+            if (next == -1) {
+                transitions[a] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int a = 0; a < width; a++) {
+                int edge = state * width + a;
+                int next = transitions[edge];
+                int fallback = transitions[failure[state] * width + a];
+                if (next == -1) {
+                    transitions[edge] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    queue.add(next);
+                }
+            }
+        }
+
+        for (String host : hosts) {
+            addHostRule(host);
+        }
+        hasHostRules = !hostRoot.children.isEmpty();
+    }
+
+    public BlacklistMatcher(Collection<String> substrings) {
+        this(substrings, Collections.<String>emptyList());
+    }
+
+    // Check if a URL is blacklisted by any substring or host rule
+    public boolean matches(String url) {
+        if (matchesEverything) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < url.length(); i++) {
+            state = transitions[state * width + symbolOf(url.charAt(i))];
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return hasHostRules && matchesHost(url);
+    }
+
+    private int symbolOf(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(alphabet, c);
+        return index < 0 ? 0 : index + 1;
+    }
+
+    private void addHostRule(String host) {
+        String[] labels = host.trim().toLowerCase(Locale.ROOT).split("\\.");
+        HostNode node = hostRoot;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i].isEmpty()) {
+                continue; // Tolerate leading dots such as ".example.com"
+            }
+            HostNode child = node.children.get(labels[i]);
+            if (child == null) {
+                child = new HostNode();
+                node.children.put(labels[i], child);
+            }
+            node = child;
+        }
+        if (node != hostRoot) {
+            node.terminal = true;
+        }
+    }
+
+    // Walk the host labels right to left; any terminal node on the way means a rule covers this host
+    private boolean matchesHost(String url) {
+        String host = hostOf(url);
+        if (host == null) {
+            return false;
+        }
+        HostNode node = hostRoot;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            node = node.children.get(host.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            end = start - 1;
+        }
+        return false;
+    }
+
+    // Extract the lower-cased host of an absolute URL, or null if there is none
+    static String hostOf(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return null;
+        }
+        int start = schemeEnd + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        String authority = url.substring(start, end);
+        authority = authority.substring(authority.lastIndexOf('@') + 1); // Drop any user info
+        int portStart = authority.lastIndexOf(':');
+        if (portStart >= 0 && !authority.endsWith("]")) {
+            authority = authority.substring(0, portStart);
+        }
+        return authority.isEmpty() ? null : authority.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,176 @@
+package com.nemesis.mocktraffic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Persists the crawl frontier and seen-set so that a restarted service resumes where it stopped.
+//
+// The state file is an append-only log. Newly queued URLs are buffered in memory by the crawl
+// threads and appended in batches by flush(); once the log has grown to several times the size of
+// the frontier it is rewritten as a compact snapshot, so each queued URL costs amortized O(1) writes.
+//
+// Layout (big-endian, strings in modified UTF-8 as written by DataOutputStream):
+//   int magic "MTCS", int version, then records until end of file:
+//   'A' short depth, utf url      a queued URL
+//   'S' long fingerprint          a URL that was seen but is not queued
+public class CrawlStateStore {
+
+    private static final int MAGIC = 0x4D544353; // "MTCS"
+    private static final int VERSION = 1;
+    private static final byte RECORD_ENTRY = 'A';
+    private static final byte RECORD_SEEN = 'S';
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private final File file;
+    private final ConcurrentLinkedQueue<UrlFrontier.Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private DataOutputStream out;
+    private int recordsSinceCompaction = 0;
+    private boolean restored = false;
+
+    public CrawlStateStore(File file) {
+        this.file = file;
+    }
+
+    // Queue a newly discovered frontier entry for the next flush; safe to call from any thread
+    public void record(UrlFrontier.Entry entry) {
+        pending.add(entry);
+        pendingCount.incrementAndGet();
+    }
+
+    // Replay the saved state into the frontier, then rewrite it as a fresh snapshot.
+    // Returns the number of URLs restored. A truncated tail, e.g. from a kill mid-write, is ignored.
+    public synchronized int restore(UrlFrontier frontier) throws IOException {
+        int restoredEntries = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    while (true) {
+                        int type = in.read();
+                        if (type == RECORD_ENTRY) {
+                            int depth = in.readShort();
+                            if (frontier.add(in.readUTF(), depth, ThreadLocalRandom.current())) {
+                                restoredEntries++;
+                            }
+                        } else if (type == RECORD_SEEN) {
+                            frontier.markSeen(in.readLong());
+                        } else {
+                            break; // End of file or an unknown record
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // The last record was cut short; everything before it has been restored
+            }
+        }
+        restored = true;
+        compact(frontier); // Start from a clean, aligned file before appending to it
+        return restoredEntries;
+    }
+
+    // Append pending entries to the log; compacts it first once it has grown too large.
+    // Does nothing until restore() has run, so the saved state is never overwritten before it is read.
+    public synchronized void flush(UrlFrontier frontier) throws IOException {
+        if (!restored) {
+            return;
+        }
+        if (recordsSinceCompaction + pendingCount.get() > Math.max(MIN_COMPACTION_RECORDS, frontier.getCapacity() * 2)) {
+            compact(frontier); // The snapshot already contains every pending entry that is still queued
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        DataOutputStream stream = openForAppend();
+        UrlFrontier.Entry entry;
+        while ((entry = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            writeEntry(stream, entry);
+            recordsSinceCompaction++;
+        }
+        stream.flush();
+    }
+
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Nothing more to save
+            }
+            out = null;
+        }
+    }
+
+    // Rewrite the state file as a snapshot of the frontier
+    private void compact(UrlFrontier frontier) throws IOException {
+        close();
+        // Drop what is pending one entry at a time: an entry recorded meanwhile must keep its count,
+        // or pendingCount falls below the queue and the compaction threshold drifts
+        while (pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        final IOException[] failure = new IOException[1];
+        try {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            frontier.snapshot(new UrlFrontier.Visitor() {
+                @Override
+                public void visitEntry(UrlFrontier.Entry entry) {
+                    try {
+                        writeEntry(stream, entry);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+
+                @Override
+                public void visitSeen(long fingerprint) {
+                    try {
+                        stream.writeByte(RECORD_SEEN);
+                        stream.writeLong(fingerprint);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+        } finally {
+            stream.close();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        recordsSinceCompaction = 0;
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+        return out;
+    }
+
+    private static void writeEntry(DataOutputStream stream, UrlFrontier.Entry entry) throws IOException {
+        if (entry.url.length() > 8192) {
+            return; // Not worth persisting, and writeUTF cannot hold arbitrarily long strings
+        }
+        stream.writeByte(RECORD_ENTRY);
+        stream.writeShort(Math.min(entry.depth, Short.MAX_VALUE));
+        stream.writeUTF(entry.url);
+    }
+}
@@ -0,0 +1,228 @@
+package com.nemesis.mocktraffic;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Dns;
+
+// Generates DNS traffic on its own, independent of the HTTP crawl.
+// A timer issues lookups through an OkHttp Dns resolver at a configured queries-per-second rate on a
+// bounded pool of lookup threads, since resolvers block. Host names come from a HostSource, which
+// the service backs with the frontier and the root URLs. The number of queries per tick is jittered
+// around the configured rate, so lookups do not go out on a fixed beat. When every lookup thread is
+// busy the query is dropped and counted instead of queued, so a slow resolver cannot build up a
+// backlog.
+public class DnsNoiseGenerator implements TrafficMetrics.JsonSection {
+
+    public static final int DEFAULT_QUERIES_PER_SECOND = 2;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    private static final long TICK_MS = 100;
+
+    // Supplies the host names to resolve
+    public interface HostSource {
+        // A host name to look up, or null if there is none right now
+        String nextHost();
+    }
+
+    public final LatencyHistogram lookupLatency = new LatencyHistogram(); // in microseconds
+
+    private final Dns dns;
+    private final HostSource hostSource;
+    private volatile double queriesPerTick;
+    private volatile int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder lookupsStarted = new LongAdder();
+    private final LongAdder lookupsSucceeded = new LongAdder();
+    private final LongAdder lookupsFailed = new LongAdder();
+    private final LongAdder addressesResolved = new LongAdder();
+    private final LongAdder lookupsDropped = new LongAdder();
+    private double pendingQueries = 0; // Fractional queries carried over between ticks; timer thread only
+    private volatile double rateFactor = 1;
+    private ExecutorService lookupExecutor;
+    private ScheduledFuture<?> task;
+
+    public DnsNoiseGenerator(Dns dns, HostSource hostSource, int queriesPerSecond, int maxInFlight) {
+        this.dns = dns;
+        this.hostSource = hostSource;
+        setRate(queriesPerSecond, maxInFlight);
+    }
+
+    // Change the query rate and lookup concurrency; call while stopped, the next start() applies them.
+    // The counters carry over, so the metrics cover every lookup since the generator was created.
+    public synchronized void setRate(int queriesPerSecond, int maxInFlight) {
+        this.queriesPerTick = Math.max(0, queriesPerSecond) * TICK_MS / 1000.0;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public synchronized void start(ScheduledExecutorService executor) {
+        stop();
+        if (queriesPerTick <= 0) {
+            return;
+        }
+        lookupExecutor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()); // Never holds more than maxInFlight lookups, see issue()
+        ((ThreadPoolExecutor) lookupExecutor).allowCoreThreadTimeOut(true);
+        task = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick(ThreadLocalRandom.current());
+            }
+        }, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        if (lookupExecutor != null) {
+            // Blocked lookups finish on their own and are still counted; queued ones never run
+            int unstarted = lookupExecutor.shutdownNow().size();
+            inFlight.addAndGet(-unstarted); // Free their slots, since a restart reuses the limit
+            lookupsDropped.add(unstarted);
+            lookupExecutor = null;
+        }
+        pendingQueries = 0;
+    }
+
+    // Scale the query rate by factor (0..1); 0 pauses the lookups
+    public void setRateFactor(double factor) {
+        rateFactor = Math.max(0, Math.min(1, factor));
+    }
+
+    // Issue the queries due this tick: between half and one and a half times the configured share, the
+    // same on average. Called by the timer thread only.
+    void tick(Random random) {
+        pendingQueries += queriesPerTick * rateFactor * (0.5 + random.nextDouble());
+        int due = (int) pendingQueries;
+        pendingQueries -= due;
+        issue(due);
+    }
+
+    // Start up to count lookups, dropping those that would exceed the in-flight limit
+    void issue(int count) {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = lookupExecutor;
+        }
+        for (int i = 0; i < count; i++) {
+            final String host = hostSource.nextHost();
+            if (host == null || host.isEmpty()) {
+                continue;
+            }
+            if (executor == null) {
+                lookupsDropped.increment(); // Not started or already stopped
+                continue;
+            }
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                lookupsDropped.increment();
+                continue;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            lookup(host);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet(); // Stopped meanwhile
+                lookupsDropped.increment();
+            }
+        }
+    }
+
+    // Resolve one host on the calling thread and record the outcome
+    void lookup(String host) {
+        lookupsStarted.increment();
+        long startNanos = System.nanoTime();
+        try {
+            List<InetAddress> addresses = dns.lookup(host);
+            lookupsSucceeded.increment();
+            addressesResolved.add(addresses.size());
+        } catch (UnknownHostException | RuntimeException e) {
+            lookupsFailed.increment();
+        } finally {
+            lookupLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        }
+    }
+
+    // Pick a host at random, from a random host queue of the frontier or, with probability rootShare, from
+    // the root hosts; null if there is none or it is an address, which is never sent to a resolver.
+    // Only real host names are queried. Spreading the lookups over every host of the frontier at
+    // jittered times keeps most of them from being answered by a cache, as with a browsing user.
+    public static String pickHost(UrlFrontier frontier, List<String> rootHosts, double rootShare) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hostCount = frontier.hostCount();
+        String host;
+        if (!rootHosts.isEmpty() && (hostCount == 0 || random.nextDouble() < rootShare)) {
+            host = rootHosts.get(random.nextInt(rootHosts.size()));
+        } else {
+            host = hostCount > 0 ? frontier.hostAt(random.nextInt(hostCount)) : null;
+        }
+        return host == null || host.isEmpty() || isIpAddress(host) ? null : host;
+    }
+
+    // Whether a host is an IPv4 or IPv6 literal rather than a name
+    static boolean isIpAddress(String host) {
+        if (host.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getLookupsStarted() {
+        return lookupsStarted.sum();
+    }
+
+    public long getLookupsSucceeded() {
+        return lookupsSucceeded.sum();
+    }
+
+    public long getLookupsFailed() {
+        return lookupsFailed.sum();
+    }
+
+    public long getLookupsDropped() {
+        return lookupsDropped.sum();
+    }
+
+    public long getAddressesResolved() {
+        return addressesResolved.sum();
+    }
+
+    @Override
+    public void appendJson(StringBuilder json) {
+        json.append("{\"started\":").append(getLookupsStarted())
+                .append(",\"succeeded\":").append(getLookupsSucceeded())
+                .append(",\"failed\":").append(getLookupsFailed())
+                .append(",\"dropped\":").append(getLookupsDropped())
+                .append(",\"addresses\":").append(getAddressesResolved())
+                .append(",\"latency_us\":");
+        lookupLatency.appendJson(json);
+        json.append('}');
+    }
+}
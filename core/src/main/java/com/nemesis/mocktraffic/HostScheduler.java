@@ -0,0 +1,177 @@
+package com.nemesis.mocktraffic;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Chooses the next URL to visit so that requests are spread across hosts.
+// Hosts of the frontier are visited round-robin, a host holding a seed of weight w getting w turns
+// on average; each host has a token bucket limiting its request rate, and a host that answers 429
+// or 5xx (or cannot be reached) is skipped for an exponentially growing backoff period, or for as
+// long as its Retry-After header asks.
+public class HostScheduler {
+
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 6;
+    public static final int DEFAULT_BURST = 3;
+    static final long BASE_BACKOFF_MS = 5000;
+    static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+    private static final int MAX_HOSTS_PER_PICK = 32; // Bounds the work of one pick when most hosts are throttled
+    private static final int MIN_TRACKED_HOSTS = 1024; // Idle host states are pruned beyond this
+
+    // Rate limit and backoff state of one host
+    private static class HostState {
+        double tokens;
+        long lastRefillNanos;
+        long backoffUntilNanos;
+        int failures;
+
+        HostState(double burst, long nowNanos) {
+            tokens = burst;
+            lastRefillNanos = nowNanos;
+        }
+
+        synchronized boolean tryAcquire(long nowNanos, double tokensPerNano, double burst) {
+            if (nowNanos - backoffUntilNanos < 0) {
+                return false;
+            }
+            refill(nowNanos, tokensPerNano, burst);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized void refill(long nowNanos, double tokensPerNano, double burst) {
+            tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+
+        synchronized void backOff(long nowNanos, long retryAfterMs) {
+            failures++;
+            long delayMs = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failures - 1, 16));
+            if (retryAfterMs > 0) {
+                delayMs = Math.max(delayMs, Math.min(retryAfterMs, MAX_BACKOFF_MS));
+            }
+            backoffUntilNanos = nowNanos + delayMs * 1000000L;
+        }
+
+        synchronized void succeeded() {
+            failures = 0;
+        }
+
+        // Whether forgetting this state would change nothing: full bucket and no backoff in effect
+        synchronized boolean isIdle(long nowNanos, double tokensPerNano, double burst) {
+            refill(nowNanos, tokensPerNano, burst);
+            return tokens >= burst && failures == 0 && nowNanos - backoffUntilNanos >= 0;
+        }
+    }
+
+    private final UrlFrontier frontier;
+    private volatile double tokensPerNano;
+    private volatile double burst;
+    private final ConcurrentHashMap<String, HostState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public HostScheduler(UrlFrontier frontier, int requestsPerMinute, int burst) {
+        this.frontier = frontier;
+        setRate(requestsPerMinute, burst);
+    }
+
+    // Change the per-host rate limit while running; buckets and backoffs carry over
+    public void setRate(int requestsPerMinute, int burst) {
+        this.tokensPerNano = Math.max(1, requestsPerMinute) / 60e9;
+        this.burst = Math.max(1, burst);
+    }
+
+    // Pick a URL from the next host that is allowed a request, or null if every host tried is throttled or backing off
+    public UrlFrontier.Entry next(Random random) {
+        return next(random, System.nanoTime());
+    }
+
+    UrlFrontier.Entry next(Random random, long nowNanos) {
+        int hostCount = frontier.hostCount();
+        int attempts = Math.min(hostCount, MAX_HOSTS_PER_PICK);
+        for (int i = 0; i < attempts; i++) {
+            // Hosts can be removed while we walk the list, so the cursor is reduced modulo the current count
+            String host = frontier.hostAt((cursor.getAndIncrement() & Integer.MAX_VALUE) % hostCount);
+            if (host == null || !stateFor(host, nowNanos).tryAcquire(nowNanos, tokensPerNano, burst)) {
+                continue;
+            }
+            UrlFrontier.Entry entry = frontier.randomEntry(host, random);
+            if (entry != null) {
+                int weight = frontier.hostWeight(host);
+                if (weight > 1 && random.nextInt(weight) != 0) {
+                    cursor.decrementAndGet(); // Stay on a host with a weighted seed for weight turns on average
+                }
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Feed back the status code of a response; retryAfter is the raw Retry-After header, or null
+    public void onResponse(String host, int code, String retryAfter) {
+        onResponse(host, code, retryAfter, System.nanoTime());
+    }
+
+    void onResponse(String host, int code, String retryAfter, long nowNanos) {
+        if (code == 429 || code >= 500) {
+            stateFor(host, nowNanos).backOff(nowNanos, parseRetryAfterMs(retryAfter));
+        } else if (code < 400) {
+            HostState state = states.get(host);
+            if (state != null) {
+                state.succeeded();
+            }
+        }
+    }
+
+    // Feed back a request that failed without a response, e.g. a refused connection or a timeout
+    public void onFailure(String host) {
+        onFailure(host, System.nanoTime());
+    }
+
+    void onFailure(String host, long nowNanos) {
+        stateFor(host, nowNanos).backOff(nowNanos, 0);
+    }
+
+    private HostState stateFor(String host, long nowNanos) {
+        HostState state = states.get(host);
+        if (state == null) {
+            if (states.size() >= Math.max(MIN_TRACKED_HOSTS, frontier.hostCount() * 2)) {
+                prune(nowNanos);
+            }
+            HostState created = new HostState(burst, nowNanos);
+            state = states.putIfAbsent(host, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    // Forget hosts whose state is back to the defaults, so hosts evicted from the frontier do not accumulate
+    private void prune(long nowNanos) {
+        Iterator<Map.Entry<String, HostState>> iterator = states.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isIdle(nowNanos, tokensPerNano, burst)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Retry-After in milliseconds when given as delta-seconds; HTTP dates fall back to the exponential backoff
+    static long parseRetryAfterMs(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            long seconds = Long.parseLong(retryAfter.trim());
+            return seconds > 0 ? Math.min(seconds, MAX_BACKOFF_MS / 1000) * 1000 : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.nemesis.mocktraffic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free log-linear histogram in the style of HdrHistogram.
+// Values below 32 get a bucket each; above that every power of two is split into 16 buckets,
+// so a reported percentile is within about 6% of the true value while recording costs one
+// atomic increment and the whole histogram fits in a few KB.
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int MAX_SHIFT = 40; // Values up to ~2^44 are tracked; larger ones are clamped
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private volatile long maxValue = 0;
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+        long max = maxValue;
+        while (value > max) {
+            synchronized (this) { // Contended only while the maximum is still climbing
+                if (value > maxValue) {
+                    maxValue = value;
+                }
+            }
+            max = maxValue;
+        }
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    public long max() {
+        return maxValue;
+    }
+
+    public double mean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    // Value at the given percentile (0-100), reported as the upper bound of its bucket
+    public long percentile(double percentile) {
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    // Copy of the bucket counts; two copies give the distribution of the values recorded in between
+    public long[] copyCounts() {
+        long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    // Value at the given percentile (0-100) of the values counted in later but not in earlier, 0 if there are none
+    public static long percentileBetween(long[] earlier, long[] later, double percentile) {
+        long count = 0;
+        for (int i = 0; i < later.length; i++) {
+            count += later[i] - earlier[i];
+        }
+        if (count <= 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < later.length; i++) {
+            seen += later[i] - earlier[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(later.length - 1);
+    }
+
+    // Append a JSON object with the count, mean, max and the usual percentiles
+    public void appendJson(StringBuilder json) {
+        json.append("{\"count\":").append(count())
+                .append(",\"mean\":").append(Math.round(mean()))
+                .append(",\"p50\":").append(percentile(50))
+                .append(",\"p90\":").append(percentile(90))
+                .append(",\"p99\":").append(percentile(99))
+                .append(",\"max\":").append(max())
+                .append('}');
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
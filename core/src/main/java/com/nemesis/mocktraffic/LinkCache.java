@@ -0,0 +1,103 @@
+package com.nemesis.mocktraffic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU cache of the links extracted from a page, keyed by URL, with a time to live.
+// Popular URLs are picked from the frontier again and again; a fresh entry lets a repeat visit
+// reuse the page's outbound links instead of parsing the body once more. The body is still
+// downloaded, so the visit costs the same traffic as any other; only the parse is saved.
+public class LinkCache implements TrafficMetrics.JsonSection {
+
+    public static final int DEFAULT_MAX_ENTRIES = 128;
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    private static class CachedLinks {
+        final List<String> links;
+        final long expiresAtNanos;
+
+        CachedLinks(List<String> links, long expiresAtNanos) {
+            this.links = links;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, CachedLinks> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LinkCache(final int maxEntries, long ttlMs) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        // Access order makes the eldest entry the least recently used one
+        this.entries = new LinkedHashMap<String, CachedLinks>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLinks> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // The links cached for a URL, or null if there are none or they have expired
+    public List<String> get(String url) {
+        return get(url, System.nanoTime());
+    }
+
+    List<String> get(String url, long nowNanos) {
+        CachedLinks cached;
+        synchronized (entries) {
+            cached = entries.get(url);
+            if (cached != null && nowNanos - cached.expiresAtNanos >= 0) {
+                entries.remove(url);
+                cached = null;
+            }
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.links;
+    }
+
+    public void put(String url, List<String> links) {
+        put(url, links, System.nanoTime());
+    }
+
+    void put(String url, List<String> links, long nowNanos) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        CachedLinks cached = new CachedLinks(Collections.unmodifiableList(new ArrayList<>(links)), nowNanos + ttlNanos);
+        synchronized (entries) {
+            entries.put(url, cached);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void appendJson(StringBuilder json) {
+        json.append("{\"hits\":").append(getHits())
+                .append(",\"misses\":").append(getMisses())
+                .append(",\"size\":").append(size())
+                .append('}');
+    }
+}
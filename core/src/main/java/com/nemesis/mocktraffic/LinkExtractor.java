@@ -0,0 +1,347 @@
+package com.nemesis.mocktraffic;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.HttpUrl;
+import okio.BufferedSource;
+
+// Pulls link targets out of HTML.
+// The streaming mode reads the response incrementally and tokenizes just enough markup to find
+// <a href>, <area href> and <base href>, stopping after a byte or link budget, so large pages are
+// never held in memory. The Jsoup mode builds a full DOM and is kept for pages the tokenizer
+// cannot read, such as documents in an encoding that is not ASCII-compatible.
+public class LinkExtractor {
+
+    private static final int MAX_HREF_BYTES = 2048; // Longer attribute values are not worth following
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final BufferedSource source;
+    private final long maxBytes;
+    private final int maxLinks;
+    private final UrlCanonicalizer canonicalizer; // Null keeps links as resolved
+    private final List<String> links = new ArrayList<>();
+    private final byte[] valueBuffer = new byte[MAX_HREF_BYTES];
+    private final StringBuilder nameBuilder = new StringBuilder();
+    private HttpUrl baseUrl;
+    private long bytesRead = 0;
+
+    public LinkExtractor(BufferedSource source, HttpUrl baseUrl, long maxBytes, int maxLinks) {
+        this(source, baseUrl, maxBytes, maxLinks, null);
+    }
+
+    public LinkExtractor(BufferedSource source, HttpUrl baseUrl, long maxBytes, int maxLinks, UrlCanonicalizer canonicalizer) {
+        this.source = source;
+        this.baseUrl = baseUrl;
+        this.maxBytes = maxBytes;
+        this.maxLinks = maxLinks;
+        this.canonicalizer = canonicalizer;
+    }
+
+    // Extract absolute http(s) links from a streamed HTML body, reading at most maxBytes bytes
+    public static List<String> extractStreaming(BufferedSource source, HttpUrl baseUrl, long maxBytes, int maxLinks) throws IOException {
+        return new LinkExtractor(source, baseUrl, maxBytes, maxLinks).extract();
+    }
+
+    // Run the tokenizer over the source and return the links found
+    public List<String> extract() throws IOException {
+        run();
+        return links;
+    }
+
+    // Whether extraction stopped on the byte or link budget, possibly leaving part of the body unread
+    public boolean stoppedEarly() {
+        return bytesRead >= maxBytes || links.size() >= maxLinks;
+    }
+
+    // Extract absolute links from a fully buffered HTML body using a Jsoup DOM
+    public static List<String> extractWithJsoup(String body, String baseUrl, int maxLinks) {
+        return extractWithJsoup(body, baseUrl, maxLinks, null);
+    }
+
+    // Same, with every link brought into canonical form; links the canonicalizer rejects are dropped.
+    // Follows the same tags as the streaming mode: <a href> and <area href>, resolved against the page
+    // URL or the latest <base href> before them, keeping only http(s) targets.
+    public static List<String> extractWithJsoup(String body, String baseUrl, int maxLinks, UrlCanonicalizer canonicalizer) {
+        List<String> links = new ArrayList<>();
+        HttpUrl base = HttpUrl.parse(baseUrl);
+        if (base == null) {
+            return links;
+        }
+        Document doc = Jsoup.parse(body, baseUrl);
+        Elements tags = doc.select("a[href], area[href], base[href]"); // In document order
+        for (Element tag : tags) {
+            HttpUrl resolved = base.resolve(tag.attr("href").trim()); // Null for non-http(s) targets such as mailto: or javascript:
+            if (resolved == null) {
+                continue;
+            }
+            if (tag.normalName().equals("base")) {
+                base = resolved;
+                continue;
+            }
+            String absoluteUrl = canonicalizer != null ? canonicalizer.canonicalize(resolved) : resolved.toString();
+            if (absoluteUrl != null) {
+                links.add(absoluteUrl);
+                if (links.size() >= maxLinks) {
+                    break;
+                }
+            }
+        }
+        return links;
+    }
+
+    // Read and decode at most maxBytes of a body for the Jsoup mode, leaving the rest unread
+    public static String readHtml(BufferedSource source, Charset charset, long maxBytes) throws IOException {
+        source.request(maxBytes);
+        long length = Math.min(source.getBuffer().size(), maxBytes);
+        return source.readString(length, charset != null ? charset : UTF_8);
+    }
+
+    // Whether the streaming tokenizer can read a body in this charset; it scans raw bytes for ASCII markup
+    public static boolean canStream(Charset charset) {
+        if (charset == null) {
+            return true; // Undeclared charsets are ASCII-compatible in practice
+        }
+        String name = charset.name().toUpperCase(Locale.ROOT);
+        return !name.startsWith("UTF-16") && !name.startsWith("UTF-32");
+    }
+
+    private int next() throws IOException {
+        if (bytesRead >= maxBytes || !source.request(1)) {
+            return -1;
+        }
+        bytesRead++;
+        return source.readByte() & 0xff;
+    }
+
+    private void run() throws IOException {
+        int c = next();
+        while (c >= 0 && links.size() < maxLinks) {
+            if (c != '<') {
+                c = next();
+                continue;
+            }
+            c = next();
+            if (c == '!') {
+                c = skipDeclaration();
+            } else if (isLetter(c)) {
+                c = readTag(c);
+            } else if (c == '/' || c == '?') {
+                c = skipTag(next());
+            }
+            // Anything else was a literal '<'; c already holds the following byte
+        }
+    }
+
+    // Skip a comment (<!-- ... -->) or a declaration such as <!DOCTYPE ...>
+    private int skipDeclaration() throws IOException {
+        int c = next();
+        if (c != '-') {
+            return skipTag(c);
+        }
+        c = next();
+        if (c != '-') {
+            return skipTag(c);
+        }
+        int dashes = 0;
+        while ((c = next()) >= 0) {
+            if (c == '>' && dashes >= 2) {
+                return next();
+            }
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+        return -1;
+    }
+
+    // Read a start tag whose name begins with c, collecting href values of the tags we care about
+    private int readTag(int c) throws IOException {
+        nameBuilder.setLength(0);
+        while (c >= 0 && !isSpace(c) && c != '>' && c != '/') {
+            nameBuilder.append((char) Character.toLowerCase(c));
+            c = next();
+        }
+        String tagName = nameBuilder.toString();
+        boolean isLink = tagName.equals("a") || tagName.equals("area");
+        boolean isBase = tagName.equals("base");
+        if (!isLink && !isBase) {
+            c = skipTag(c);
+            if (tagName.equals("script") || tagName.equals("style")) {
+                c = skipRawText(tagName);
+            }
+            return c;
+        }
+
+        String href = null;
+        while (true) {
+            while (c >= 0 && (isSpace(c) || c == '/')) {
+                c = next();
+            }
+            if (c < 0) {
+                return -1; // Truncated tag; drop it
+            }
+            if (c == '>') {
+                break;
+            }
+            nameBuilder.setLength(0);
+            while (c >= 0 && !isSpace(c) && c != '=' && c != '>' && c != '/') {
+                nameBuilder.append((char) Character.toLowerCase(c));
+                c = next();
+            }
+            while (c >= 0 && isSpace(c)) {
+                c = next();
+            }
+            if (c != '=') {
+                continue; // Attribute without a value
+            }
+            c = next();
+            while (c >= 0 && isSpace(c)) {
+                c = next();
+            }
+            int length = 0;
+            boolean overflow = false;
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = next()) >= 0 && c != quote) {
+                    if (length < MAX_HREF_BYTES) {
+                        valueBuffer[length++] = (byte) c;
+                    } else {
+                        overflow = true;
+                    }
+                }
+                c = next();
+            } else {
+                while (c >= 0 && !isSpace(c) && c != '>') {
+                    if (length < MAX_HREF_BYTES) {
+                        valueBuffer[length++] = (byte) c;
+                    } else {
+                        overflow = true;
+                    }
+                    c = next();
+                }
+            }
+            if (href == null && !overflow && nameBuilder.toString().equals("href")) {
+                href = decodeEntities(new String(valueBuffer, 0, length, UTF_8).trim());
+            }
+        }
+
+        if (href != null && !href.isEmpty()) {
+            HttpUrl resolved = baseUrl.resolve(href); // Null for non-http(s) targets such as mailto: or javascript:
+            if (resolved != null) {
+                if (isBase) {
+                    baseUrl = resolved;
+                } else {
+                    links.add(canonicalizer != null ? canonicalizer.canonicalize(resolved) : resolved.toString());
+                }
+            }
+        }
+        return next();
+    }
+
+    // Skip the rest of a tag, honouring quoted attribute values that may contain '>'
+    private int skipTag(int c) throws IOException {
+        int quote = 0;
+        while (c >= 0) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return next();
+            }
+            c = next();
+        }
+        return -1;
+    }
+
+    // Skip the contents of <script> or <style> up to and including the matching end tag
+    private int skipRawText(String tagName) throws IOException {
+        int c = next();
+        while (c >= 0) {
+            if (c != '<') {
+                c = next();
+                continue;
+            }
+            c = next();
+            if (c != '/') {
+                continue;
+            }
+            int matched = 0;
+            c = next();
+            while (matched < tagName.length() && c >= 0 && Character.toLowerCase(c) == tagName.charAt(matched)) {
+                matched++;
+                c = next();
+            }
+            if (matched == tagName.length() && (c == '>' || isSpace(c) || c == '/')) {
+                return skipTag(c);
+            }
+        }
+        return -1;
+    }
+
+    // Decode the few character references that commonly appear inside URLs
+    static String decodeEntities(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder decoded = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char ch = value.charAt(i);
+            int end = ch == '&' ? value.indexOf(';', i) : -1;
+            if (end > i + 1 && end - i <= 10) {
+                String entity = value.substring(i + 1, end);
+                int codePoint = -1;
+                if (entity.equals("amp")) {
+                    codePoint = '&';
+                } else if (entity.equals("quot")) {
+                    codePoint = '"';
+                } else if (entity.equals("apos")) {
+                    codePoint = '\'';
+                } else if (entity.equals("lt")) {
+                    codePoint = '<';
+                } else if (entity.equals("gt")) {
+                    codePoint = '>';
+                } else if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                    codePoint = parseCodePoint(entity.substring(2), 16);
+                } else if (entity.startsWith("#")) {
+                    codePoint = parseCodePoint(entity.substring(1), 10);
+                }
+                if (codePoint >= 0) {
+                    decoded.appendCodePoint(codePoint);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            decoded.append(ch);
+            i++;
+        }
+        return decoded.toString();
+    }
+
+    private static int parseCodePoint(String digits, int radix) {
+        try {
+            int codePoint = Integer.parseInt(digits, radix);
+            return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
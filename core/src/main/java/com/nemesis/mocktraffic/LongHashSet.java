@@ -0,0 +1,85 @@
+package com.nemesis.mocktraffic;
+
+// Open-addressing hash set of 64-bit values, used to store URL fingerprints without boxing.
+// Zero is reserved as the empty-slot marker, so callers must never add 0.
+public class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 1024; // Must be a power of two
+
+    private long[] table;
+    private int size = 0;
+
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongHashSet(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+        table = new long[capacity];
+    }
+
+    // Add a value, returning false if it was already present
+    public boolean add(long value) {
+        if (size * 2 >= table.length) {
+            resize(table.length * 2); // Keep the load factor at or below 0.5 for short probe chains
+        }
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Copy all values into target starting at offset, returning the number copied
+    public int copyTo(long[] target, int offset) {
+        int count = 0;
+        for (long value : table) {
+            if (value != 0) {
+                target[offset + count++] = value;
+            }
+        }
+        return count;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldTable = table;
+        table = new long[newCapacity];
+        int mask = newCapacity - 1;
+        for (long value : oldTable) {
+            if (value != 0) {
+                int index = mix(value) & mask;
+                while (table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    // Fold the high bits into the low bits used for indexing
+    private static int mix(long value) {
+        return (int) (value ^ (value >>> 32));
+    }
+}
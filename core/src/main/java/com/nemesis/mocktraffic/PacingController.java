@@ -0,0 +1,127 @@
+package com.nemesis.mocktraffic;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Paces the browsing sessions towards a target request rate.
+// Every session asks for a slot before sending and waits nextDelayMs() between attempts. The delay
+// spreads the target rate over the sessions and is jittered so the pattern does not look machine
+// made. A closed loop scales the rate down multiplicatively when latency exceeds the target or
+// requests fail, and back up additively while responses are fast (AIMD). A hard in-flight limit
+// keeps calls from piling up on a slow network. An external throttle factor, set from the device
+// state, scales both the rate and the in-flight limit and pauses sending entirely at 0.
+public class PacingController implements TrafficMetrics.JsonSection {
+
+    static final double MIN_SCALE = 0.05; // Never slow down below 5% of the target rate
+    static final double DECREASE_FACTOR = 0.7;
+    static final double INCREASE_STEP = 0.05;
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1); // One cut per burst of bad news
+
+    private double targetRequestsPerMinute;
+    private int maxInFlight;
+    private double jitter; // Relative half-width of the delay distribution, 0..1
+    private long targetLatencyNanos;
+    private int inFlight;
+    private double scale = 1;
+    private double throttle = 1;
+    private double latencyEwmaNanos;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+    private long completed;
+    private long failed;
+
+    public PacingController(int targetRequestsPerMinute, int maxInFlight, int jitterPercent, long targetLatencyMs) {
+        setTarget(targetRequestsPerMinute, maxInFlight, jitterPercent, targetLatencyMs);
+    }
+
+    // Change the targets while running; calls in flight, the rate scale and the throttle are kept
+    public synchronized void setTarget(int targetRequestsPerMinute, int maxInFlight, int jitterPercent, long targetLatencyMs) {
+        this.targetRequestsPerMinute = Math.max(1, targetRequestsPerMinute);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.jitter = Math.max(0, Math.min(100, jitterPercent)) / 100.0;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMs));
+    }
+
+    // Take an in-flight slot, or return false if the limit is reached
+    public synchronized boolean tryAcquire() {
+        if (throttle <= 0 || inFlight >= Math.max(1, (int) Math.ceil(maxInFlight * throttle))) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    // Give back a slot that was not used for a request
+    public synchronized void release() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+    }
+
+    // Give back the slot of a finished request; latency is the time until the response headers or the failure
+    public void onComplete(long latencyNanos, boolean failed) {
+        onComplete(latencyNanos, failed, System.nanoTime());
+    }
+
+    synchronized void onComplete(long latencyNanos, boolean failed, long nowNanos) {
+        release();
+        completed++;
+        latencyEwmaNanos = completed == 1 ? latencyNanos : latencyEwmaNanos + LATENCY_EWMA_WEIGHT * (latencyNanos - latencyEwmaNanos);
+        if (failed) {
+            this.failed++;
+        }
+        if (failed || latencyEwmaNanos > targetLatencyNanos) {
+            if (!decreased || nowNanos - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+                scale = Math.max(MIN_SCALE, scale * DECREASE_FACTOR);
+                lastDecreaseNanos = nowNanos;
+                decreased = true;
+            }
+        } else {
+            scale = Math.min(1, scale + INCREASE_STEP);
+        }
+    }
+
+    // Scale the rate and the in-flight limit by factor (0..1); 0 pauses sending
+    public synchronized void setThrottle(double factor) {
+        throttle = Math.max(0, Math.min(1, factor));
+    }
+
+    // Delay before a session's next attempt, so that sessionCount sessions together reach the current rate
+    public long nextDelayMs(int sessionCount, Random random) {
+        double ratePerMinute;
+        double jitter;
+        synchronized (this) {
+            // While paused sessions keep polling at the unthrottled pace, which costs no traffic
+            ratePerMinute = targetRequestsPerMinute * scale * (throttle > 0 ? throttle : 1);
+            jitter = this.jitter;
+        }
+        double meanDelayMs = Math.max(1, sessionCount) * 60000.0 / ratePerMinute;
+        double factor = 1 + jitter * (2 * random.nextDouble() - 1);
+        return Math.max(1, Math.round(meanDelayMs * factor));
+    }
+
+    public synchronized double getRateScale() {
+        return scale;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized double getCurrentRequestsPerMinute() {
+        return targetRequestsPerMinute * scale * throttle;
+    }
+
+    @Override
+    public synchronized void appendJson(StringBuilder json) {
+        json.append("{\"target_rpm\":").append(Math.round(targetRequestsPerMinute))
+                .append(",\"current_rpm\":").append(Math.round(targetRequestsPerMinute * scale * throttle))
+                .append(",\"throttle\":").append(throttle)
+                .append(",\"in_flight\":").append(inFlight)
+                .append(",\"latency_ewma_ms\":").append(TimeUnit.NANOSECONDS.toMillis((long) latencyEwmaNanos))
+                .append(",\"completed\":").append(completed)
+                .append(",\"failed\":").append(failed)
+                .append('}');
+    }
+}
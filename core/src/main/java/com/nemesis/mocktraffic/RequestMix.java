@@ -0,0 +1,57 @@
+package com.nemesis.mocktraffic;
+
+import java.util.Random;
+
+// Weighted choice of how a visit is made.
+// Only FULL downloads and parses a whole page; the other modes still open a connection, do the TLS
+// handshake and send a real request, but transfer a few hundred bytes instead of the full body, so
+// a metered link gets many more distinct requests per MB.
+public class RequestMix {
+
+    public enum Mode {
+        FULL, // GET, read the body and extract links
+        HEAD, // HEAD, headers only
+        RANGE, // GET with "Range: bytes=0-N", links are taken from the partial body
+        CANCEL // GET, cancelled as soon as the response headers arrive
+    }
+
+    private final int[] weights = new int[Mode.values().length];
+    private final int total;
+    private final int lightTotal; // Sum of the weights of every mode but FULL
+
+    public RequestMix(int full, int head, int range, int cancel) {
+        weights[Mode.FULL.ordinal()] = Math.max(0, full);
+        weights[Mode.HEAD.ordinal()] = Math.max(0, head);
+        weights[Mode.RANGE.ordinal()] = Math.max(0, range);
+        weights[Mode.CANCEL.ordinal()] = Math.max(0, cancel);
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        total = sum;
+        lightTotal = sum - weights[Mode.FULL.ordinal()];
+    }
+
+    // Pick a mode by weight. When the page's links are not wanted, e.g. at max_depth, FULL is only
+    // chosen if no lighter mode is configured.
+    public Mode pick(Random random, boolean wantLinks) {
+        if (!wantLinks && lightTotal > 0) {
+            return pick(random.nextInt(lightTotal), Mode.HEAD.ordinal());
+        }
+        if (total == 0) {
+            return Mode.FULL;
+        }
+        return pick(random.nextInt(total), Mode.FULL.ordinal());
+    }
+
+    private Mode pick(int ticket, int firstMode) {
+        Mode[] modes = Mode.values();
+        for (int i = firstMode; i < modes.length; i++) {
+            ticket -= weights[i];
+            if (ticket < 0) {
+                return modes[i];
+            }
+        }
+        return modes[modes.length - 1];
+    }
+}
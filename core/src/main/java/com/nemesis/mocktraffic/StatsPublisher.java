@@ -0,0 +1,57 @@
+package com.nemesis.mocktraffic;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Publishes request statistics at a fixed cadence instead of once per request.
+// Requests only bump an in-memory counter; the publisher samples it on a timer and hands the value
+// to its sink when it has changed, so the cost of the broadcast no longer scales with traffic.
+public class StatsPublisher {
+
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+
+    // Receives the aggregated statistics
+    public interface Sink {
+        void publish(long requestCount);
+    }
+
+    private final LongAdder requestCount;
+    private final Sink sink;
+    private final long intervalMs;
+    private long lastPublished = -1;
+    private ScheduledFuture<?> task;
+
+    public StatsPublisher(LongAdder requestCount, Sink sink, long intervalMs) {
+        this.requestCount = requestCount;
+        this.sink = sink;
+        this.intervalMs = intervalMs;
+    }
+
+    public synchronized void start(ScheduledExecutorService executor) {
+        stop();
+        task = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                publishIfChanged();
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    // Publish the current value if it differs from the last one sent
+    public synchronized void publishIfChanged() {
+        long count = requestCount.sum();
+        if (count != lastPublished) {
+            lastPublished = count;
+            sink.publish(count);
+        }
+    }
+}
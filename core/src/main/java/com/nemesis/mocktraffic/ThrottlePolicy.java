@@ -0,0 +1,69 @@
+package com.nemesis.mocktraffic;
+
+// Maps the device's power and network state to how much traffic to generate.
+// Traffic is cheapest on an unmetered network while charging, so that gets the full rate; running
+// on battery scales it down with the battery level, a metered network keeps it to a trickle, and
+// Doze or a lost connection pause it. Battery saver halves whatever rate would apply otherwise.
+public class ThrottlePolicy {
+
+    // The inputs of the policy, as reported by the platform
+    public static class DeviceState {
+        public final boolean connected;
+        public final boolean metered;
+        public final boolean charging;
+        public final int batteryPercent; // 0..100, or -1 if unknown
+        public final boolean deviceIdle; // Doze
+        public final boolean powerSave;
+
+        public DeviceState(boolean connected, boolean metered, boolean charging, int batteryPercent, boolean deviceIdle, boolean powerSave) {
+            this.connected = connected;
+            this.metered = metered;
+            this.charging = charging;
+            this.batteryPercent = batteryPercent;
+            this.deviceIdle = deviceIdle;
+            this.powerSave = powerSave;
+        }
+
+        @Override
+        public String toString() {
+            return "connected=" + connected + " metered=" + metered + " charging=" + charging
+                    + " battery=" + batteryPercent + "% idle=" + deviceIdle + " powerSave=" + powerSave;
+        }
+    }
+
+    static final double METERED_CHARGING_FACTOR = 0.25;
+    static final double METERED_FACTOR = 0.1;
+    static final double BATTERY_FACTOR = 0.6;
+    static final double HALF_BATTERY_FACTOR = 0.4;
+    static final double LOW_BATTERY_FACTOR = 0.05;
+    static final int LOW_BATTERY_PERCENT = 20;
+    static final int HALF_BATTERY_PERCENT = 50;
+
+    private final boolean enabled;
+
+    public ThrottlePolicy(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Share of the configured request rate and concurrency to use, from 0 (paused) to 1 (full rate)
+    public double rateFactor(DeviceState state) {
+        if (!enabled) {
+            return 1;
+        }
+        if (!state.connected || state.deviceIdle) {
+            return 0;
+        }
+        boolean lowBattery = !state.charging && state.batteryPercent >= 0 && state.batteryPercent < LOW_BATTERY_PERCENT;
+        double factor;
+        if (lowBattery) {
+            factor = LOW_BATTERY_FACTOR;
+        } else if (state.metered) {
+            factor = state.charging ? METERED_CHARGING_FACTOR : METERED_FACTOR;
+        } else if (state.charging) {
+            factor = 1;
+        } else {
+            factor = state.batteryPercent < 0 || state.batteryPercent >= HALF_BATTERY_PERCENT ? BATTERY_FACTOR : HALF_BATTERY_FACTOR;
+        }
+        return state.powerSave ? factor / 2 : factor;
+    }
+}
@@ -0,0 +1,466 @@
+package com.nemesis.mocktraffic;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Immutable traffic settings, read either from config.json or from the compact config.bin asset
+// that the compileTrafficConfig Gradle task generates from it.
+//
+// config.bin layout (big-endian, strings in modified UTF-8 as written by DataOutputStream):
+//   int magic "MTCF", int version
+//   int n, then n x (utf key, int value)          numbers and booleans (0/1)
+//   int n, then n x (utf key, utf value)          strings
+//   int n, then n x (utf key, int m, m x utf)     string lists
+//   int n, then n x (utf key, int m, m x (utf, int))   weighted lists such as root_urls with weights
+//
+// root_urls entries are URL strings or {"url": ..., "weight": n} objects. They are brought into
+// canonical form and variants of one page (http/https, "www.", trailing slash) are merged into a
+// single seed, keeping the https variant and the largest weight.
+public class TrafficConfig {
+
+    public static final String JSON_ASSET = "config.json";
+    public static final String BINARY_ASSET = "config.bin";
+    static final int BINARY_MAGIC = 0x4D544346; // "MTCF"
+    static final int BINARY_VERSION = 2;
+    // Keys of config.json the service never reads; writeBinary leaves them out to keep config.bin small
+    static final Set<String> UNUSED_KEYS = Collections.singleton("user_agents");
+
+    // A root URL and how much more often than an unweighted one it is visited
+    public static class Seed {
+        public final String url;
+        public final int weight;
+
+        public Seed(String url, int weight) {
+            this.url = url;
+            this.weight = Math.max(1, weight);
+        }
+    }
+
+    public final List<Seed> seeds; // Canonical root URLs with their weights, variants merged
+    public final List<String> rootUrls; // The URLs of seeds
+    public final List<String> blacklistedUrls;
+    public final List<String> blacklistedHosts;
+    public final int maxDepth;
+    public final int minSleep; // in milliseconds
+    public final int maxSleep; // in milliseconds
+    public final int timeout; // in milliseconds, for a whole call
+    public final int connectTimeout; // in milliseconds, capped at timeout
+    public final int readTimeout; // in milliseconds, capped at timeout
+    public final int frontierCapacity; // Maximum number of queued URLs
+    public final boolean useJsoupExtraction; // Parse full pages with Jsoup instead of streaming
+    public final int maxBodyBytes; // Stop reading a page after this many bytes
+    public final int maxLinksPerPage; // Stop extracting links from a page after this many
+    public final int sessionCount; // Number of independent browsing sessions
+    public final int maxRequests; // Dispatcher limit on concurrent calls
+    public final int maxRequestsPerHost; // Dispatcher limit on concurrent calls to one host
+    public final int maxIdleConnections; // Idle connections kept in the pool
+    public final int keepAliveMs; // How long an idle connection is kept
+    public final boolean cancelAfterBudget; // Cancel the call once the body budget is used instead of draining it
+    public final int hostRequestsPerMinute; // Sustained request rate allowed per host
+    public final int hostBurst; // Requests a host may receive back to back after being idle
+    public final int dnsQueriesPerSecond; // Rate of standalone DNS lookups; 0 disables them
+    public final int dnsMaxInFlight; // Concurrent standalone DNS lookups
+    public final RequestMix requestMix; // How visits are split between full pages and lightweight requests
+    public final int rangeRequestBytes; // Bytes asked for by a RANGE visit
+    public final int linkCacheSize; // Pages whose extracted links are kept in memory
+    public final int linkCacheTtlMs; // How long extracted links are reused; 0 disables the link cache
+    public final int httpCacheBytes; // Size of the OkHttp disk cache; 0 disables it
+    public final int targetRequestsPerMinute; // Rate all sessions together aim for
+    public final int maxInFlight; // Calls started but not yet finished, across all sessions
+    public final int pacingJitterPercent; // How far a single delay may stray from the mean, in percent
+    public final int targetLatencyMs; // Above this response latency the request rate is cut back
+    public final boolean adaptiveThrottling; // Scale traffic with battery, network and Doze state
+    public final List<String> strippedQueryParams; // Query parameters removed from every URL; "prefix*" matches a prefix
+
+    private final Values values; // Kept so that withOverrides() can fall back to them
+
+    // Key/value access shared by the JSON and binary readers
+    private interface Values {
+        boolean has(String key);
+
+        int getInt(String key, int fallback);
+
+        String getString(String key, String fallback);
+
+        List<String> getList(String key);
+
+        // A list whose items may carry weights; plain strings have weight 1
+        List<Seed> getSeeds(String key);
+    }
+
+    private TrafficConfig(Values values) {
+        this.values = values;
+        for (String required : new String[]{"root_urls", "blacklisted_urls", "max_depth"}) {
+            if (!values.has(required)) {
+                throw new IllegalArgumentException("Missing config key: " + required);
+            }
+        }
+        // The sleep range is only needed to derive the pacing keys when they are not given
+        boolean explicitPacing = values.has("target_requests_per_minute") && values.has("pacing_jitter_percent");
+        for (String required : new String[]{"min_sleep", "max_sleep"}) {
+            if (!explicitPacing && !values.has(required)) {
+                throw new IllegalArgumentException("Missing config key: " + required
+                        + " (or set target_requests_per_minute and pacing_jitter_percent)");
+            }
+        }
+        blacklistedUrls = Collections.unmodifiableList(values.getList("blacklisted_urls"));
+        blacklistedHosts = Collections.unmodifiableList(values.getList("blacklisted_hosts"));
+        maxDepth = values.getInt("max_depth", 5);
+        sessionCount = Math.max(1, values.getInt("sessions", 1));
+        int pacedDelay = 0; // One session's mean delay under explicit pacing, which the sleep range then defaults to
+        int pacedSpread = 0;
+        if (explicitPacing) {
+            pacedDelay = (int) Math.min(Integer.MAX_VALUE, sessionCount * 60000L / Math.max(1, values.getInt("target_requests_per_minute", 1)));
+            pacedSpread = (int) ((long) pacedDelay * Math.max(0, Math.min(100, values.getInt("pacing_jitter_percent", 0))) / 100);
+        }
+        minSleep = values.getInt("min_sleep", explicitPacing ? pacedDelay - pacedSpread : 2000);
+        maxSleep = Math.max(minSleep, values.getInt("max_sleep", explicitPacing ? pacedDelay + pacedSpread : 5000));
+        timeout = values.getInt("timeout", 60000); // Default to 60 seconds if not provided
+        connectTimeout = values.getInt("connect_timeout", 15000);
+        readTimeout = values.getInt("read_timeout", 20000);
+        frontierCapacity = values.getInt("frontier_capacity", UrlFrontier.DEFAULT_CAPACITY);
+        useJsoupExtraction = "jsoup".equals(values.getString("link_extraction", "stream"));
+        maxBodyBytes = values.getInt("max_body_bytes", 512 * 1024);
+        maxLinksPerPage = values.getInt("max_links_per_page", 200);
+        maxRequests = Math.max(1, values.getInt("max_requests", 64));
+        maxRequestsPerHost = Math.max(1, values.getInt("max_requests_per_host", 5));
+        maxIdleConnections = Math.max(0, values.getInt("max_idle_connections", Math.max(5, sessionCount)));
+        keepAliveMs = Math.max(1, values.getInt("keep_alive_ms", 60000));
+        cancelAfterBudget = values.getInt("cancel_after_budget", 1) != 0;
+        hostRequestsPerMinute = Math.max(1, values.getInt("host_requests_per_minute", HostScheduler.DEFAULT_REQUESTS_PER_MINUTE));
+        hostBurst = Math.max(1, values.getInt("host_burst", HostScheduler.DEFAULT_BURST));
+        dnsQueriesPerSecond = Math.max(0, values.getInt("dns_queries_per_second", DnsNoiseGenerator.DEFAULT_QUERIES_PER_SECOND));
+        dnsMaxInFlight = Math.max(1, values.getInt("dns_max_in_flight", DnsNoiseGenerator.DEFAULT_MAX_IN_FLIGHT));
+        requestMix = new RequestMix(values.getInt("request_mix_full", 100), values.getInt("request_mix_head", 0),
+                values.getInt("request_mix_range", 0), values.getInt("request_mix_cancel", 0));
+        rangeRequestBytes = Math.max(1, values.getInt("range_request_bytes", 2048));
+        linkCacheSize = Math.max(1, values.getInt("link_cache_size", LinkCache.DEFAULT_MAX_ENTRIES));
+        linkCacheTtlMs = Math.max(0, values.getInt("link_cache_ttl_ms", (int) LinkCache.DEFAULT_TTL_MS));
+        httpCacheBytes = Math.max(0, values.getInt("http_cache_bytes", 0));
+        // Without explicit pacing keys, keep the rate and spread of the min_sleep..max_sleep delays
+        targetRequestsPerMinute = Math.max(1, values.getInt("target_requests_per_minute",
+                (int) (sessionCount * 60000L * 2 / Math.max(1, minSleep + maxSleep))));
+        maxInFlight = Math.max(1, values.getInt("max_in_flight", 8));
+        pacingJitterPercent = Math.max(0, Math.min(100, values.getInt("pacing_jitter_percent",
+                (maxSleep - minSleep) * 100 / Math.max(1, minSleep + maxSleep))));
+        targetLatencyMs = Math.max(1, values.getInt("target_latency_ms", 5000));
+        adaptiveThrottling = values.getInt("adaptive_throttling", 1) != 0;
+        strippedQueryParams = Collections.unmodifiableList(values.has("stripped_query_params")
+                ? values.getList("stripped_query_params") : UrlCanonicalizer.DEFAULT_STRIPPED_PARAMS);
+        seeds = Collections.unmodifiableList(mergeSeeds(values.getSeeds("root_urls"), buildUrlCanonicalizer()));
+        List<String> urls = new ArrayList<>(seeds.size());
+        for (Seed seed : seeds) {
+            urls.add(seed.url);
+        }
+        rootUrls = Collections.unmodifiableList(urls);
+    }
+
+    // Canonicalize the seeds and merge the variants of each page; URLs that do not parse are kept as given
+    static List<Seed> mergeSeeds(List<Seed> seeds, UrlCanonicalizer canonicalizer) {
+        Map<String, Seed> merged = new LinkedHashMap<>();
+        for (Seed seed : seeds) {
+            String url = canonicalizer.canonicalize(seed.url);
+            if (url == null) {
+                url = seed.url;
+            }
+            String key = UrlCanonicalizer.variantKey(url);
+            Seed previous = merged.get(key);
+            if (previous != null) {
+                boolean preferNew = !previous.url.startsWith("https:") && url.startsWith("https:");
+                url = preferNew ? url : previous.url;
+            }
+            merged.put(key, new Seed(url, previous != null ? Math.max(previous.weight, seed.weight) : seed.weight));
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // Build the canonicalizer applied to seeds and extracted links
+    public UrlCanonicalizer buildUrlCanonicalizer() {
+        return new UrlCanonicalizer(strippedQueryParams);
+    }
+
+    // Compile the blacklist rules into a matcher
+    public BlacklistMatcher buildBlacklistMatcher() {
+        return new BlacklistMatcher(blacklistedUrls, blacklistedHosts);
+    }
+
+    // Parse the configuration JSON
+    public static TrafficConfig fromJson(String jsonString) throws JSONException {
+        try {
+            return new TrafficConfig(jsonValues(new JSONObject(jsonString)));
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    // A copy of this configuration in which the keys present in overrideJson replace its own,
+    // so a partial override such as {"target_requests_per_minute": 120} changes only that setting
+    public TrafficConfig withOverrides(String overrideJson) throws JSONException {
+        final Values overrides = jsonValues(new JSONObject(overrideJson));
+        final Values base = values;
+        try {
+            return new TrafficConfig(new Values() {
+                @Override
+                public boolean has(String key) {
+                    return overrides.has(key) || base.has(key);
+                }
+
+                @Override
+                public int getInt(String key, int fallback) {
+                    return overrides.has(key) ? overrides.getInt(key, fallback) : base.getInt(key, fallback);
+                }
+
+                @Override
+                public String getString(String key, String fallback) {
+                    return overrides.has(key) ? overrides.getString(key, fallback) : base.getString(key, fallback);
+                }
+
+                @Override
+                public List<String> getList(String key) {
+                    return overrides.has(key) ? overrides.getList(key) : base.getList(key);
+                }
+
+                @Override
+                public List<Seed> getSeeds(String key) {
+                    return overrides.has(key) ? overrides.getSeeds(key) : base.getSeeds(key);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    private static Values jsonValues(final JSONObject jsonObject) {
+        return new Values() {
+            @Override
+            public boolean has(String key) {
+                return jsonObject.has(key);
+            }
+
+            @Override
+            public int getInt(String key, int fallback) {
+                Object value = jsonObject.opt(key);
+                if (value instanceof Boolean) {
+                    return (Boolean) value ? 1 : 0;
+                }
+                return jsonObject.optInt(key, fallback);
+            }
+
+            @Override
+            public String getString(String key, String fallback) {
+                return jsonObject.optString(key, fallback);
+            }
+
+            @Override
+            public List<String> getList(String key) {
+                List<String> list = new ArrayList<>();
+                JSONArray array = jsonObject.optJSONArray(key);
+                if (array != null) {
+                    for (int i = 0; i < array.length(); i++) {
+                        list.add(array.optString(i));
+                    }
+                }
+                return list;
+            }
+
+            @Override
+            public List<Seed> getSeeds(String key) {
+                List<Seed> seeds = new ArrayList<>();
+                JSONArray array = jsonObject.optJSONArray(key);
+                if (array != null) {
+                    for (int i = 0; i < array.length(); i++) {
+                        JSONObject object = array.optJSONObject(i);
+                        if (object != null) {
+                            seeds.add(new Seed(object.optString("url"), object.optInt("weight", 1)));
+                        } else {
+                            seeds.add(new Seed(array.optString(i), 1));
+                        }
+                    }
+                }
+                return seeds;
+            }
+        };
+    }
+
+    // Compile config.json into config.bin: TrafficConfig <config.json> <config.bin>.
+    // The compileTrafficConfig Gradle task runs this, so the build and the reader share one definition of the layout.
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: TrafficConfig <config.json> <config.bin>");
+        }
+        File jsonFile = new File(args[0]);
+        byte[] json = new byte[(int) jsonFile.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(jsonFile))) {
+            in.readFully(json);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            writeBinary(new String(json, StandardCharsets.UTF_8), out);
+        }
+    }
+
+    // Write config.json in the config.bin layout read by readBinary, leaving out UNUSED_KEYS.
+    // Keys are written in sorted order so that the same config.json always gives the same bytes.
+    public static void writeBinary(String json, OutputStream outputStream) throws IOException, JSONException {
+        JSONObject config = new JSONObject(json);
+        List<String> ints = new ArrayList<>();
+        List<String> strings = new ArrayList<>();
+        List<String> lists = new ArrayList<>();
+        List<String> weightedLists = new ArrayList<>(); // Lists with {"url", "weight"} objects, such as weighted root_urls
+        Set<String> keys = new TreeSet<>();
+        for (Iterator<String> it = config.keys(); it.hasNext(); ) {
+            keys.add(it.next());
+        }
+        keys.removeAll(UNUSED_KEYS);
+        for (String key : keys) {
+            Object value = config.get(key);
+            if (value instanceof Number || value instanceof Boolean) {
+                ints.add(key);
+            } else if (value instanceof String) {
+                strings.add(key);
+            } else if (value instanceof JSONArray) {
+                boolean weighted = false;
+                for (int i = 0; i < ((JSONArray) value).length(); i++) {
+                    weighted |= ((JSONArray) value).get(i) instanceof JSONObject;
+                }
+                (weighted ? weightedLists : lists).add(key);
+            }
+        }
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(ints.size());
+        for (String key : ints) {
+            Object value = config.get(key);
+            out.writeUTF(key);
+            out.writeInt(value instanceof Boolean ? ((Boolean) value ? 1 : 0) : ((Number) value).intValue());
+        }
+        out.writeInt(strings.size());
+        for (String key : strings) {
+            out.writeUTF(key);
+            out.writeUTF(config.getString(key));
+        }
+        out.writeInt(lists.size());
+        for (String key : lists) {
+            JSONArray array = config.getJSONArray(key);
+            out.writeUTF(key);
+            out.writeInt(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                out.writeUTF(String.valueOf(array.get(i)));
+            }
+        }
+        out.writeInt(weightedLists.size());
+        for (String key : weightedLists) {
+            JSONArray array = config.getJSONArray(key);
+            out.writeUTF(key);
+            out.writeInt(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.optJSONObject(i);
+                out.writeUTF(item != null ? item.getString("url") : String.valueOf(array.get(i)));
+                out.writeInt(item != null ? item.optInt("weight", 1) : 1);
+            }
+        }
+        out.flush();
+    }
+
+    // Read a config.bin stream written by writeBinary
+    public static TrafficConfig readBinary(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a compiled traffic config");
+        }
+        int version = in.readInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("Unsupported compiled traffic config version " + version);
+        }
+        final Map<String, Integer> ints = new HashMap<>();
+        final Map<String, String> strings = new HashMap<>();
+        final Map<String, List<String>> lists = new HashMap<>();
+        final Map<String, List<Seed>> weightedLists = new HashMap<>();
+        for (int n = in.readInt(); n > 0; n--) {
+            ints.put(in.readUTF(), in.readInt());
+        }
+        for (int n = in.readInt(); n > 0; n--) {
+            strings.put(in.readUTF(), in.readUTF());
+        }
+        for (int n = in.readInt(); n > 0; n--) {
+            String key = in.readUTF();
+            int size = in.readInt();
+            List<String> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(in.readUTF());
+            }
+            lists.put(key, list);
+        }
+        for (int n = in.readInt(); n > 0; n--) {
+            String key = in.readUTF();
+            int size = in.readInt();
+            List<Seed> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(new Seed(in.readUTF(), in.readInt()));
+            }
+            weightedLists.put(key, list);
+        }
+        try {
+            return new TrafficConfig(new Values() {
+                @Override
+                public boolean has(String key) {
+                    return ints.containsKey(key) || strings.containsKey(key) || lists.containsKey(key) || weightedLists.containsKey(key);
+                }
+
+                @Override
+                public int getInt(String key, int fallback) {
+                    Integer value = ints.get(key);
+                    return value != null ? value : fallback;
+                }
+
+                @Override
+                public String getString(String key, String fallback) {
+                    String value = strings.get(key);
+                    return value != null ? value : fallback;
+                }
+
+                @Override
+                public List<String> getList(String key) {
+                    List<String> list = lists.get(key);
+                    return list != null ? list : new ArrayList<String>();
+                }
+
+                @Override
+                public List<Seed> getSeeds(String key) {
+                    List<Seed> seeds = weightedLists.get(key);
+                    if (seeds != null) {
+                        return seeds;
+                    }
+                    seeds = new ArrayList<>();
+                    for (String url : getList(key)) {
+                        seeds.add(new Seed(url, 1));
+                    }
+                    return seeds;
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
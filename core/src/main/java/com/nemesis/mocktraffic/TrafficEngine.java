@@ -0,0 +1,581 @@
+package com.nemesis.mocktraffic;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+// The crawl itself: browsing sessions take URLs from the frontier through the host scheduler and
+// the pacing controller, send them with one shared OkHttp client and feed the links they find back
+// into the frontier. Everything platform specific comes in through the constructor and the Logger
+// and Listener interfaces, so the same engine runs in the Android service and in the JVM runner.
+//
+// The configuration can be replaced while the engine runs. The frontier, the host scheduler and
+// the pacing controller stay and are retuned in place; everything a request reads from the
+// configuration is rebuilt off to the side as one Settings object and swapped in with a single
+// write, so each session turn sees either the old settings or the new ones, never a mix.
+public class TrafficEngine {
+
+    // Receives the engine's log output; error may be called with a null throwable
+    public interface Logger {
+        void debug(String message);
+
+        void error(String message, Throwable error);
+    }
+
+    // Receives crawl progress
+    public interface Listener {
+        // A response with a successful status arrived
+        void onRequestSucceeded();
+
+        // A session found the frontier empty and stopped
+        void onFrontierExhausted();
+    }
+
+    // Everything a request derives from the configuration, replaced as a whole by reconfigure()
+    private static class Settings {
+        final TrafficConfig config;
+        final BlacklistMatcher blacklistMatcher;
+        final UrlCanonicalizer canonicalizer;
+        final LinkCache linkCache;
+        final OkHttpClient httpClient; // Null until start()
+
+        Settings(TrafficConfig config, BlacklistMatcher blacklistMatcher, UrlCanonicalizer canonicalizer, LinkCache linkCache, OkHttpClient httpClient) {
+            this.config = config;
+            this.blacklistMatcher = blacklistMatcher;
+            this.canonicalizer = canonicalizer;
+            this.linkCache = linkCache;
+            this.httpClient = httpClient;
+        }
+
+        Settings withHttpClient(OkHttpClient client) {
+            return new Settings(config, blacklistMatcher, canonicalizer, linkCache, client);
+        }
+    }
+
+    static final double DNS_ROOT_HOST_SHARE = 0.25; // Share of DNS noise lookups for root hosts rather than frontier hosts
+    static final long DISCARD_CHUNK_BYTES = 8192;
+    static final int CRAWL_STATE_FLUSH_INTERVAL = 10000; // Append newly found URLs to disk every 10 seconds
+
+    private final TrafficMetrics metrics;
+    private final Dns dns;
+    private final File httpCacheDir; // Null disables the HTTP cache whatever the config says
+    private final CrawlStateStore crawlState; // Null when the crawl is not persisted
+    private final Logger logger;
+    private final Listener listener;
+    private final UrlFrontier frontier;
+    private final HostScheduler hostScheduler;
+    private final PacingController pacing;
+    private final Set<Integer> liveSessions = ConcurrentHashMap.newKeySet(); // Ids of the sessions still scheduled
+    private volatile Settings settings;
+    private volatile ScheduledExecutorService executor;
+    private volatile DnsNoiseGenerator dnsNoise;
+    private volatile List<String> rootHosts; // Hosts of the root URLs, for DNS noise
+    private volatile ThrottlePolicy throttlePolicy;
+    private volatile ThrottlePolicy.DeviceState deviceState; // Last state passed to applyDeviceState, null if none
+    private volatile double throttleFactor = 1; // Last factor passed to setThrottle
+    private volatile boolean running = false;
+
+    public TrafficEngine(TrafficConfig config, TrafficMetrics metrics, Dns dns, File httpCacheDir,
+                         CrawlStateStore crawlState, Logger logger, Listener listener) {
+        this.metrics = metrics;
+        this.dns = dns;
+        this.httpCacheDir = httpCacheDir;
+        this.crawlState = crawlState;
+        this.logger = logger;
+        this.listener = listener;
+        settings = buildSettings(config, null, null);
+        rootHosts = rootHostsOf(config);
+        throttlePolicy = new ThrottlePolicy(config.adaptiveThrottling);
+        frontier = new UrlFrontier(config.frontierCapacity);
+        addSeeds(config);
+        hostScheduler = new HostScheduler(frontier, config.hostRequestsPerMinute, config.hostBurst);
+        pacing = new PacingController(config.targetRequestsPerMinute, config.maxInFlight, config.pacingJitterPercent, config.targetLatencyMs);
+        metrics.setSection("pacing", pacing);
+    }
+
+    // Start the browsing sessions, DNS noise and crawl state persistence on executor.
+    // The caller owns the executor; shutting it down stops every session.
+    public synchronized void start(ScheduledExecutorService executor) {
+        if (running) {
+            return;
+        }
+        running = true;
+        this.executor = executor;
+        settings = settings.withHttpClient(buildHttpClient(settings.config));
+        liveSessions.clear();
+        startSessions(settings.config, 0);
+        startDnsNoise(settings.config);
+        if (crawlState != null) {
+            // Restore the frontier saved by a previous run while the sessions already crawl from the root URLs
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int restored = crawlState.restore(frontier);
+                        logger.debug("Restored " + restored + " URLs from the saved crawl state");
+                    } catch (IOException e) {
+                        logger.error("Error restoring the crawl state", e);
+                    }
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushCrawlState();
+                }
+            }, CRAWL_STATE_FLUSH_INTERVAL, CRAWL_STATE_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Stop scheduling requests and DNS lookups and abandon in-flight requests
+    public synchronized void stop() {
+        running = false;
+        DnsNoiseGenerator generator = dnsNoise;
+        if (generator != null) {
+            generator.stop();
+        }
+        OkHttpClient client = settings.httpClient;
+        if (client != null) {
+            client.dispatcher().cancelAll();
+        }
+    }
+
+    // Switch to a new configuration without dropping calls in flight or the discovered frontier.
+    // Call it off the main thread, since the blacklist is compiled before anything is swapped.
+    // New seeds join the frontier; URLs already queued stay even if their seed was removed. The
+    // frontier capacity and the HTTP cache size keep their values until the engine is rebuilt.
+    public synchronized void reconfigure(TrafficConfig config) {
+        Settings previous = settings;
+        OkHttpClient client = previous.httpClient != null ? rebuildHttpClient(previous.httpClient, previous.config, config) : null;
+        Settings next = buildSettings(config, previous, client);
+        hostScheduler.setRate(config.hostRequestsPerMinute, config.hostBurst);
+        pacing.setTarget(config.targetRequestsPerMinute, config.maxInFlight, config.pacingJitterPercent, config.targetLatencyMs);
+        settings = next; // Calls already enqueued finish on the client and rules they started with
+        addSeeds(config);
+        if (client != null && client.connectionPool() != previous.httpClient.connectionPool()) {
+            previous.httpClient.connectionPool().evictAll(); // Only idle connections are closed
+        }
+        if (running) {
+            startSessions(config, previous.config.sessionCount); // Surplus sessions end on their next turn
+        }
+        rootHosts = rootHostsOf(config); // DNS noise reads it on every pick, so new root hosts need no restart
+        DnsNoiseGenerator generator = dnsNoise;
+        if (generator != null && (config.dnsQueriesPerSecond != previous.config.dnsQueriesPerSecond
+                || config.dnsMaxInFlight != previous.config.dnsMaxInFlight)) {
+            // Only a new rate or in-flight limit restarts DNS noise; the same generator, so its counters carry on
+            generator.stop();
+            generator.setRate(config.dnsQueriesPerSecond, config.dnsMaxInFlight);
+            if (running) {
+                generator.start(executor);
+            }
+        }
+        if (config.adaptiveThrottling != previous.config.adaptiveThrottling) {
+            throttlePolicy = new ThrottlePolicy(config.adaptiveThrottling);
+            ThrottlePolicy.DeviceState state = deviceState;
+            if (state != null) {
+                applyDeviceState(state);
+            }
+        }
+        logger.debug("Configuration replaced: " + config.sessionCount + " sessions, " + config.targetRequestsPerMinute
+                + " requests per minute, " + config.rootUrls.size() + " root URLs");
+    }
+
+    // Write newly found URLs to the crawl state and close it; call from a background thread after stop()
+    public void saveState() {
+        if (crawlState != null) {
+            flushCrawlState();
+            crawlState.close();
+        }
+    }
+
+    // Scale request rate, concurrency and DNS noise by factor (0..1); returns false if it was already set
+    public boolean setThrottle(double factor) {
+        if (factor == throttleFactor) {
+            return false;
+        }
+        throttleFactor = factor;
+        pacing.setThrottle(factor);
+        DnsNoiseGenerator generator = dnsNoise;
+        if (generator != null) {
+            generator.setRateFactor(factor);
+        }
+        return true;
+    }
+
+    // Throttle traffic for the given device state under the configured policy; returns the factor if it changed, -1 otherwise
+    public double applyDeviceState(ThrottlePolicy.DeviceState state) {
+        deviceState = state;
+        double factor = throttlePolicy.rateFactor(state);
+        return setThrottle(factor) ? factor : -1;
+    }
+
+    public TrafficConfig getConfig() {
+        return settings.config;
+    }
+
+    public UrlFrontier getFrontier() {
+        return frontier;
+    }
+
+    public PacingController getPacing() {
+        return pacing;
+    }
+
+    // Compile the rules a request needs; the link cache is kept when nothing that shaped its lists changed
+    private Settings buildSettings(TrafficConfig config, Settings previous, OkHttpClient httpClient) {
+        LinkCache linkCache;
+        if (previous != null && sameLinkRules(previous.config, config)) {
+            linkCache = previous.linkCache;
+        } else {
+            linkCache = new LinkCache(config.linkCacheSize, config.linkCacheTtlMs);
+            metrics.setSection("link_cache", linkCache);
+        }
+        return new Settings(config, config.buildBlacklistMatcher(), config.buildUrlCanonicalizer(), linkCache, httpClient);
+    }
+
+    private static boolean sameLinkRules(TrafficConfig a, TrafficConfig b) {
+        return a.blacklistedUrls.equals(b.blacklistedUrls) && a.blacklistedHosts.equals(b.blacklistedHosts)
+                && a.strippedQueryParams.equals(b.strippedQueryParams) && a.maxLinksPerPage == b.maxLinksPerPage
+                && a.linkCacheSize == b.linkCacheSize && a.linkCacheTtlMs == b.linkCacheTtlMs;
+    }
+
+    private static List<String> rootHostsOf(TrafficConfig config) {
+        List<String> hosts = new ArrayList<>();
+        for (String rootUrl : config.rootUrls) {
+            String host = BlacklistMatcher.hostOf(rootUrl);
+            if (host != null) {
+                hosts.add(host);
+            }
+        }
+        return hosts;
+    }
+
+    private void addSeeds(TrafficConfig config) {
+        for (TrafficConfig.Seed seed : config.seeds) {
+            // Add URLs from config to visit list at depth 0; they are already canonical
+            frontier.add(new UrlFrontier.Entry(seed.url, 0, seed.weight), ThreadLocalRandom.current());
+        }
+    }
+
+    // Schedule a session for each id below config.sessionCount that has none; ids from staggerFrom on start staggered
+    private void startSessions(TrafficConfig config, int staggerFrom) {
+        for (int i = 0; i < config.sessionCount; i++) {
+            if (liveSessions.add(i)) {
+                // Stagger session start times so they do not fire in lockstep
+                int initialDelay = i == 0 || i < staggerFrom ? 0 : ThreadLocalRandom.current().nextInt(config.maxSleep + 1);
+                executor.schedule(new BrowsingSession(i), initialDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Whether a session beyond the configured count should end. Runs under the engine lock, so a
+    // reconfigure() raising the count again either keeps this session or schedules a replacement.
+    private synchronized boolean retireIfSurplus(int sessionId) {
+        if (sessionId < settings.config.sessionCount) {
+            return false;
+        }
+        liveSessions.remove(sessionId);
+        return true;
+    }
+
+    // Start standalone DNS lookups of frontier and root hosts alongside the crawl
+    private void startDnsNoise(TrafficConfig config) {
+        DnsNoiseGenerator generator = new DnsNoiseGenerator(dns, new DnsNoiseGenerator.HostSource() {
+            @Override
+            public String nextHost() {
+                return DnsNoiseGenerator.pickHost(frontier, rootHosts, DNS_ROOT_HOST_SHARE);
+            }
+        }, config.dnsQueriesPerSecond, config.dnsMaxInFlight);
+        generator.setRateFactor(throttleFactor);
+        metrics.setSection("dns_noise", generator);
+        generator.start(executor);
+        dnsNoise = generator;
+    }
+
+    // A browsing session that crawls and makes HTTP requests on its own random timing
+    private class BrowsingSession implements Runnable {
+        private final int sessionId;
+
+        BrowsingSession(int sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void run() {
+            if (!running) {
+                liveSessions.remove(sessionId);
+                return;
+            }
+            Settings current = settings; // One view of the configuration for the whole turn
+            if (sessionId >= current.config.sessionCount && retireIfSurplus(sessionId)) {
+                logger.debug("Session " + sessionId + " ended by a configuration change.");
+                return;
+            }
+            logger.debug("Session " + sessionId + " running. URLs to visit: " + frontier.size());
+            if (frontier.isEmpty()) {
+                logger.debug("No URLs to visit.");
+                liveSessions.remove(sessionId);
+                listener.onFrontierExhausted();
+                return;
+            }
+            // Skip this turn when too many calls are still in flight
+            if (pacing.tryAcquire()) {
+                boolean sent = false;
+                // Null when every host tried is rate limited or backing off; the session then just waits its turn
+                UrlFrontier.Entry entryToVisit = hostScheduler.next(ThreadLocalRandom.current());
+                if (entryToVisit != null) {
+                    logger.debug("Session " + sessionId + " visiting URL: " + entryToVisit.url + " (depth " + entryToVisit.depth + ")");
+                    try {
+                        sent = makeHttpRequest(entryToVisit, current);
+                    } catch (RuntimeException e) {
+                        // An exception escaping a scheduled task would silently end this session
+                        logger.error("Failed to request URL: " + entryToVisit.url, e);
+                    }
+                }
+                if (!sent) {
+                    pacing.release();
+                }
+            }
+
+            // Schedule this session's next request after a paced, jittered delay
+            long sleepTime = pacing.nextDelayMs(current.config.sessionCount, ThreadLocalRandom.current());
+            ScheduledExecutorService sessionExecutor = executor;
+            if (running && !sessionExecutor.isShutdown()) {
+                sessionExecutor.schedule(this, sleepTime, TimeUnit.MILLISECONDS);
+            } else {
+                liveSessions.remove(sessionId);
+            }
+        }
+    }
+
+    // Build the HTTP client shared by all sessions, so they share one dispatcher and connection pool
+    private OkHttpClient buildHttpClient(TrafficConfig config) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.maxRequests);
+        dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if (config.httpCacheBytes > 0 && httpCacheDir != null) {
+            // Revalidated or fresh pages are then served from disk; their links still go through linkCache
+            final Cache cache = new Cache(httpCacheDir, config.httpCacheBytes);
+            builder.cache(cache);
+            metrics.setSection("http_cache", new TrafficMetrics.JsonSection() {
+                @Override
+                public void appendJson(StringBuilder json) {
+                    json.append("{\"requests\":").append(cache.requestCount())
+                            .append(",\"network\":").append(cache.networkCount())
+                            .append(",\"hits\":").append(cache.hitCount())
+                            .append('}');
+                }
+            });
+        }
+        return applyTimeouts(builder, config)
+                .dns(dns)
+                .dispatcher(dispatcher)
+                .eventListenerFactory(metrics)
+                .connectionPool(new ConnectionPool(config.maxIdleConnections, config.keepAliveMs, TimeUnit.MILLISECONDS))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)) // HTTP/2 where the server offers it via ALPN
+                .build();
+    }
+
+    // Derive the client for a new configuration from the running one. The dispatcher is shared and
+    // its limits changed in place, so running calls keep their slots; the cache is shared as well,
+    // and the connection pool is only replaced when its own settings changed.
+    private OkHttpClient rebuildHttpClient(OkHttpClient client, TrafficConfig previous, TrafficConfig config) {
+        client.dispatcher().setMaxRequests(config.maxRequests);
+        client.dispatcher().setMaxRequestsPerHost(config.maxRequestsPerHost);
+        OkHttpClient.Builder builder = applyTimeouts(client.newBuilder(), config);
+        if (config.maxIdleConnections != previous.maxIdleConnections || config.keepAliveMs != previous.keepAliveMs) {
+            builder.connectionPool(new ConnectionPool(config.maxIdleConnections, config.keepAliveMs, TimeUnit.MILLISECONDS));
+        }
+        return builder.build();
+    }
+
+    private static OkHttpClient.Builder applyTimeouts(OkHttpClient.Builder builder, TrafficConfig config) {
+        return builder
+                .callTimeout(config.timeout, TimeUnit.MILLISECONDS) // A slow host cannot hold a call longer than this
+                .connectTimeout(Math.min(config.connectTimeout, config.timeout), TimeUnit.MILLISECONDS)
+                .readTimeout(Math.min(config.readTimeout, config.timeout), TimeUnit.MILLISECONDS)
+                .writeTimeout(Math.min(config.readTimeout, config.timeout), TimeUnit.MILLISECONDS);
+    }
+
+    // Make an HTTP request to a given frontier entry, in a mode drawn from the configured request mix.
+    // Returns whether a call was enqueued; its completion then gives back the pacing slot.
+    private boolean makeHttpRequest(final UrlFrontier.Entry entry, final Settings current) {
+        final String url = entry.url;
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            logger.error("Invalid URL scheme: " + url, null);
+            return false; // Skip this URL since it's not an HTTP/HTTPS URL
+        }
+
+        final TrafficConfig config = current.config;
+        final boolean wantLinks = entry.depth < config.maxDepth; // Links found at max_depth would be dropped anyway
+        final RequestMix.Mode mode = config.requestMix.pick(ThreadLocalRandom.current(), wantLinks);
+        Request.Builder requestBuilder = new Request.Builder().url(url);
+        if (mode == RequestMix.Mode.HEAD) {
+            requestBuilder.head();
+        } else if (mode == RequestMix.Mode.RANGE) {
+            requestBuilder.header("Range", "bytes=0-" + (config.rangeRequestBytes - 1));
+        }
+        Request request = requestBuilder.build();
+        metrics.recordRequest(mode);
+
+        final String host = UrlFrontier.hostKey(url);
+        final long startNanos = System.nanoTime();
+        current.httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // Failures are counted by TrafficMetrics.callFailed
+                logger.error("Failed to load URL: " + url, e);
+                if (!call.isCanceled()) {
+                    hostScheduler.onFailure(host); // Back off from hosts that cannot be reached
+                }
+                pacing.onComplete(System.nanoTime() - startNanos, !call.isCanceled());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                long latencyNanos = System.nanoTime() - startNanos;
+                int code = response.code();
+                try {
+                    handleResponse(call, response);
+                } finally {
+                    // The slot is held until the body is dealt with; overload responses slow the pace down
+                    pacing.onComplete(latencyNanos, code == 429 || code >= 500);
+                }
+            }
+
+            private void handleResponse(Call call, Response response) {
+                hostScheduler.onResponse(host, response.code(), response.header("Retry-After"));
+                if (response.isSuccessful()) {
+                    listener.onRequestSucceeded();
+                    metrics.recordSuccess();
+                    logger.debug("Visited URL: " + url + " | Status: " + response.code() + " | Mode: " + mode);
+
+                    // Skip parsing when the page's links are not wanted or the mode does not read the body
+                    if (!wantLinks || mode == RequestMix.Mode.HEAD || mode == RequestMix.Mode.CANCEL) {
+                        if (mode == RequestMix.Mode.CANCEL || (mode == RequestMix.Mode.FULL && config.cancelAfterBudget)) {
+                            call.cancel(); // Closing an unread body would otherwise try to drain it
+                        }
+                        response.close();
+                        return;
+                    }
+
+                    // A RANGE visit only reads as much as it asked for, even if the server ignored the Range header
+                    long maxBytes = mode == RequestMix.Mode.RANGE ? config.rangeRequestBytes : config.maxBodyBytes;
+                    // A repeat visit reuses the links found last time instead of parsing the page again,
+                    // but still downloads the page like any other visit of its mode
+                    List<String> extractedUrls = current.linkCache.get(url);
+                    if (extractedUrls != null) {
+                        discardBody(call, response, maxBytes, config.cancelAfterBudget);
+                    } else {
+                        // Extract URLs from the response body
+                        extractedUrls = extractUrlsFromBody(call, response, maxBytes, current);
+                        if (mode == RequestMix.Mode.FULL) {
+                            current.linkCache.put(url, extractedUrls); // A RANGE visit only saw the start of the page
+                        }
+                    }
+                    for (String extractedUrl : extractedUrls) {
+                        UrlFrontier.Entry discovered = new UrlFrontier.Entry(extractedUrl, entry.depth + 1);
+                        if (frontier.add(discovered, ThreadLocalRandom.current()) && crawlState != null) { // Add extracted URLs unless already seen
+                            crawlState.record(discovered);
+                        }
+                    }
+                } else {
+                    metrics.recordHttpError(call.request().url().host(), response.code());
+                    logger.error("Failed to visit URL: " + url + " | Status: " + response.code(), null);
+                    response.close();
+                }
+            }
+        });
+        return true;
+    }
+
+    // Extract URLs from the HTML response, streaming the body unless Jsoup is configured or required
+    private List<String> extractUrlsFromBody(Call call, Response response, long maxBytes, Settings current) {
+        TrafficConfig config = current.config;
+        List<String> extractedUrls = new ArrayList<>();
+        try (ResponseBody body = response.body()) {
+            MediaType contentType = body.contentType();
+            Charset charset = contentType != null ? contentType.charset(null) : null;
+            List<String> links;
+            if (config.useJsoupExtraction || !LinkExtractor.canStream(charset)) {
+                // Same byte budget as the streaming mode, so a RANGE visit or an oversized page is not read whole
+                BufferedSource source = body.source();
+                String html = LinkExtractor.readHtml(source, charset, maxBytes);
+                if (config.cancelAfterBudget && !source.exhausted()) {
+                    call.cancel();
+                }
+                links = LinkExtractor.extractWithJsoup(html, response.request().url().toString(), config.maxLinksPerPage, current.canonicalizer);
+            } else {
+                LinkExtractor extractor = new LinkExtractor(body.source(), response.request().url(), maxBytes, config.maxLinksPerPage, current.canonicalizer);
+                links = extractor.extract();
+                if (config.cancelAfterBudget && extractor.stoppedEarly()) {
+                    call.cancel(); // Drop the rest of the body rather than downloading bytes nobody reads
+                }
+            }
+
+            for (String absoluteUrl : links) {
+                if (!current.blacklistMatcher.matches(absoluteUrl)) { // Already seen URLs are kept so that the list can be cached; the frontier drops them
+                    extractedUrls.add(absoluteUrl); // Add valid URLs to the list
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to extract URLs", e);
+        }
+        return extractedUrls;
+    }
+
+    // Read and drop up to maxBytes of the body, cancelling the rest of it when cancelAfterBudget is set
+    private void discardBody(Call call, Response response, long maxBytes, boolean cancelAfterBudget) {
+        try (ResponseBody body = response.body()) {
+            BufferedSource source = body.source();
+            Buffer discarded = new Buffer();
+            long total = 0;
+            while (total < maxBytes) {
+                long read = source.read(discarded, Math.min(DISCARD_CHUNK_BYTES, maxBytes - total));
+                if (read < 0) {
+                    return;
+                }
+                total += read;
+                discarded.clear();
+            }
+            if (cancelAfterBudget) {
+                call.cancel(); // Budget used up; drop the rest as the extracting path does
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read body of " + call.request().url(), e);
+        }
+    }
+
+    // Append newly discovered URLs to the saved crawl state
+    private void flushCrawlState() {
+        try {
+            crawlState.flush(frontier);
+        } catch (IOException e) {
+            logger.error("Error saving the crawl state", e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.nemesis.mocktraffic;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+// Per-request instrumentation collected through OkHttp's EventListener.
+// Phase timings (DNS, connect, TLS, time to first byte, total) go into LatencyHistograms in
+// microseconds; bytes, successes and errors go into LongAdders, so recording never takes a lock.
+// Errors are counted by type (exception class or "http_<code>") and by host.
+public class TrafficMetrics implements EventListener.Factory {
+
+    private static final int MAX_TRACKED_HOSTS = 256; // Further hosts are folded into OTHER_HOST to bound memory
+    private static final String OTHER_HOST = "(other)";
+
+    public final LatencyHistogram dnsLatency = new LatencyHistogram();
+    public final LatencyHistogram connectLatency = new LatencyHistogram();
+    public final LatencyHistogram tlsLatency = new LatencyHistogram();
+    public final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    public final LatencyHistogram callLatency = new LatencyHistogram();
+
+    private final LongAdder callsStarted = new LongAdder();
+    private final LongAdder callsSucceeded = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> errorsByHost = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> requestsByMode = new ConcurrentHashMap<>();
+    private final Map<String, JsonSection> sections = new ConcurrentHashMap<>();
+    private final long startedAtMillis = System.currentTimeMillis();
+
+    // Metrics kept by another component and exported as one more object in toJson()
+    public interface JsonSection {
+        void appendJson(StringBuilder json);
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallTimer();
+    }
+
+    // Record a response that arrived but was not successful
+    public void recordHttpError(String host, int code) {
+        recordError("http_" + code, host);
+    }
+
+    // Export a section under the given key, replacing any previous one; null removes it
+    public void setSection(String key, JsonSection section) {
+        if (section != null) {
+            sections.put(key, section);
+        } else {
+            sections.remove(key);
+        }
+    }
+
+    // Count a request made in the given mode of the request mix
+    public void recordRequest(RequestMix.Mode mode) {
+        increment(requestsByMode, mode.name().toLowerCase(Locale.ROOT));
+    }
+
+    public void recordSuccess() {
+        callsSucceeded.increment();
+    }
+
+    public long getCallsStarted() {
+        return callsStarted.sum();
+    }
+
+    public long getCallsSucceeded() {
+        return callsSucceeded.sum();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    public long getErrorCount() {
+        long total = 0;
+        for (LongAdder count : errorsByType.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    private void recordError(String type, String host) {
+        increment(errorsByType, type);
+        if (!errorsByHost.containsKey(host) && errorsByHost.size() >= MAX_TRACKED_HOSTS) {
+            host = OTHER_HOST;
+        }
+        increment(errorsByHost, host);
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.increment();
+    }
+
+    // Export all metrics as a JSON document
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"uptime_ms\":").append(System.currentTimeMillis() - startedAtMillis)
+                .append(",\"calls_started\":").append(getCallsStarted())
+                .append(",\"calls_succeeded\":").append(getCallsSucceeded())
+                .append(",\"bytes_downloaded\":").append(getBytesDownloaded())
+                .append(",\"errors\":").append(getErrorCount())
+                .append(",\"latency_us\":{\"dns\":");
+        dnsLatency.appendJson(json);
+        json.append(",\"connect\":");
+        connectLatency.appendJson(json);
+        json.append(",\"tls\":");
+        tlsLatency.appendJson(json);
+        json.append(",\"ttfb\":");
+        timeToFirstByte.appendJson(json);
+        json.append(",\"call\":");
+        callLatency.appendJson(json);
+        json.append("},\"errors_by_type\":");
+        appendCounters(json, errorsByType);
+        json.append(",\"errors_by_host\":");
+        appendCounters(json, errorsByHost);
+        json.append(",\"requests_by_mode\":");
+        appendCounters(json, requestsByMode);
+        for (Map.Entry<String, JsonSection> section : new TreeMap<>(sections).entrySet()) {
+            json.append(',');
+            appendString(json, section.getKey());
+            json.append(':');
+            section.getValue().appendJson(json);
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    private static void appendCounters(StringBuilder json, Map<String, LongAdder> counters) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, counter.getKey());
+            json.append(':').append(counter.getValue().sum());
+        }
+        json.append('}');
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static long microsSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    // Timestamps for a single call; OkHttp delivers one call's events sequentially
+    private class CallTimer extends EventListener {
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+
+        @Override
+        public void callStart(Call call) {
+            callsStarted.increment();
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsLatency.record(microsSince(dnsStart));
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsLatency.record(microsSince(secureConnectStart));
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectLatency.record(microsSince(connectStart));
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            timeToFirstByte.record(microsSince(callStart));
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bytesDownloaded.add(byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            callLatency.record(microsSince(callStart));
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            callLatency.record(microsSince(callStart));
+            if (!call.isCanceled()) { // Calls we cancel ourselves, e.g. after the read budget, are not errors
+                recordError(ioe.getClass().getSimpleName(), call.request().url().host());
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.nemesis.mocktraffic;
+
+import java.util.Locale;
+
+// A reading of the traffic counters at one moment, taken on demand by whoever displays them.
+// Taking one only reads counters the requests update anyway, so polling costs the crawl nothing;
+// two readings give the request rate, throughput, error rate and call latency percentiles of the
+// interval between them.
+public class TrafficStats {
+
+    public final long timestampNanos;
+    public final long callsSucceeded;
+    public final long bytesDownloaded;
+    public final long errors;
+    public final int inFlight; // Calls started but not yet finished
+    public final int frontierSize;
+    private final long[] latencyCounts; // Call latency histogram buckets, in microseconds
+
+    TrafficStats(long timestampNanos, long callsSucceeded, long bytesDownloaded, long errors, int inFlight, int frontierSize, long[] latencyCounts) {
+        this.timestampNanos = timestampNanos;
+        this.callsSucceeded = callsSucceeded;
+        this.bytesDownloaded = bytesDownloaded;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.frontierSize = frontierSize;
+        this.latencyCounts = latencyCounts;
+    }
+
+    // Read the counters now; engine may be null while it is still loading
+    public static TrafficStats capture(TrafficMetrics metrics, TrafficEngine engine) {
+        return new TrafficStats(System.nanoTime(), metrics.getCallsSucceeded(), metrics.getBytesDownloaded(), metrics.getErrorCount(),
+                engine != null ? engine.getPacing().getInFlight() : 0, engine != null ? engine.getFrontier().size() : 0,
+                metrics.callLatency.copyCounts());
+    }
+
+    public double requestsPerSecondSince(TrafficStats earlier) {
+        return perSecond(callsSucceeded - earlier.callsSucceeded, earlier);
+    }
+
+    public double bytesPerSecondSince(TrafficStats earlier) {
+        return perSecond(bytesDownloaded - earlier.bytesDownloaded, earlier);
+    }
+
+    // Share of the calls finished since earlier that failed or got an error status, 0..1
+    public double errorRateSince(TrafficStats earlier) {
+        long failed = errors - earlier.errors;
+        long finished = failed + callsSucceeded - earlier.callsSucceeded;
+        return finished > 0 ? (double) failed / finished : 0;
+    }
+
+    // Call latency in microseconds at the given percentile (0-100) of the calls finished since earlier
+    public long latencyPercentileSince(TrafficStats earlier, double percentile) {
+        return LatencyHistogram.percentileBetween(earlier.latencyCounts, latencyCounts, percentile);
+    }
+
+    // A few lines summarizing the interval since earlier, for a status display
+    public String describeSince(TrafficStats earlier) {
+        return String.format(Locale.ROOT, "%.0f req/s, %.1f KiB/s\nIn flight: %d, frontier: %d\nLatency p50/p90/p99: %d/%d/%d ms\nErrors: %.1f%%",
+                requestsPerSecondSince(earlier), bytesPerSecondSince(earlier) / 1024, inFlight, frontierSize,
+                latencyPercentileSince(earlier, 50) / 1000, latencyPercentileSince(earlier, 90) / 1000,
+                latencyPercentileSince(earlier, 99) / 1000, errorRateSince(earlier) * 100);
+    }
+
+    private double perSecond(long delta, TrafficStats earlier) {
+        long elapsedNanos = timestampNanos - earlier.timestampNanos;
+        return elapsedNanos > 0 ? delta * 1e9 / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.nemesis.mocktraffic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+
+// Reduces the many spellings of a URL to one, so the frontier's seen-set recognises them as the
+// same page. Parsing through HttpUrl lower-cases the scheme and host, drops default ports and
+// normalizes the path and its percent-encoding; on top of that the fragment is removed, and so are
+// query parameters that only track where a click came from. A stripped parameter is given by
+// exact name or by a prefix ending in '*', compared case-insensitively.
+public class UrlCanonicalizer {
+
+    public static final List<String> DEFAULT_STRIPPED_PARAMS = Collections.unmodifiableList(Arrays.asList(
+            "utm_*", "fbclid", "gclid", "dclid", "gbraid", "wbraid", "msclkid", "yclid", "mc_cid", "mc_eid", "igshid", "_ga", "_gl"));
+
+    private final Set<String> strippedNames = new HashSet<>();
+    private final String[] strippedPrefixes;
+
+    public UrlCanonicalizer(Collection<String> strippedParams) {
+        List<String> prefixes = new ArrayList<>();
+        for (String param : strippedParams) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                prefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                strippedNames.add(name);
+            }
+        }
+        strippedPrefixes = prefixes.toArray(new String[0]);
+    }
+
+    // Canonical form of an absolute http(s) URL, or null if it is not one
+    public String canonicalize(String url) {
+        HttpUrl parsed = HttpUrl.parse(url.trim());
+        return parsed != null ? canonicalize(parsed) : null;
+    }
+
+    // Canonical form of a parsed URL; URLs without a fragment or query come back without copying
+    public String canonicalize(HttpUrl url) {
+        String query = url.encodedQuery();
+        if (url.encodedFragment() == null && query == null) {
+            return url.toString();
+        }
+        HttpUrl.Builder builder = url.newBuilder().fragment(null);
+        if (query != null) {
+            builder.encodedQuery(stripParams(query));
+        }
+        return builder.build().toString();
+    }
+
+    // The query without stripped parameters, in their original order and encoding; null if none are left
+    String stripParams(String query) {
+        StringBuilder kept = null;
+        int start = 0;
+        boolean stripped = false;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            int nameEnd = query.indexOf('=', start);
+            if (nameEnd < 0 || nameEnd > end) {
+                nameEnd = end;
+            }
+            if (end > start && isStripped(query.substring(start, nameEnd))) {
+                stripped = true;
+            } else if (end > start) {
+                if (kept == null) {
+                    kept = new StringBuilder(query.length());
+                } else {
+                    kept.append('&');
+                }
+                kept.append(query, start, end);
+            }
+            start = end + 1;
+        }
+        if (!stripped) {
+            return query.isEmpty() ? null : query;
+        }
+        return kept != null ? kept.toString() : null;
+    }
+
+    boolean isStripped(String encodedName) {
+        String name = encodedName.toLowerCase(Locale.ROOT);
+        if (strippedNames.contains(name)) {
+            return true;
+        }
+        for (String prefix : strippedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Key shared by the http/https, "www." and trailing slash variants of a canonical URL, used to merge seeds
+    static String variantKey(String canonicalUrl) {
+        int hostStart = canonicalUrl.indexOf("://");
+        String key = hostStart >= 0 ? canonicalUrl.substring(hostStart + 3) : canonicalUrl;
+        if (key.startsWith("www.")) {
+            key = key.substring(4);
+        }
+        int pathEnd = key.indexOf('?');
+        if (pathEnd < 0) {
+            pathEnd = key.length();
+        }
+        if (pathEnd > 0 && key.charAt(pathEnd - 1) == '/') {
+            key = key.substring(0, pathEnd - 1) + key.substring(pathEnd);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,375 @@
+package com.nemesis.mocktraffic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Crawl frontier: per-host queues of URLs for O(1) random picks, plus sets of 64-bit URL
+// fingerprints so that deduplication costs O(1) instead of a scan of the whole list.
+// Both are bounded so that memory stays flat over long sessions.
+// Hosts are kept in an indexable list so a scheduler can walk them round-robin. Each host queue
+// and each of the fingerprint segments has its own lock, so callback threads appending links and
+// sessions sampling URLs rarely contend. The host list lock is only taken to add or remove a
+// host; picks, lookups by index and evictions read a copy of the list published on every change.
+public class UrlFrontier {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    private static final int SEGMENT_COUNT = 16; // Must be a power of two
+
+    // A URL waiting to be visited, together with its link distance from the root URL it came from.
+    // An entry of weight w is picked as often as w entries of weight 1 would be; only seeds are weighted.
+    public static class Entry {
+        public final String url;
+        public final int depth;
+        public final int weight;
+
+        public Entry(String url, int depth) {
+            this(url, depth, 1);
+        }
+
+        public Entry(String url, int depth, int weight) {
+            this.url = url;
+            this.depth = depth;
+            this.weight = Math.max(1, weight);
+        }
+    }
+
+    // Fingerprints of one slice of the URL space
+    private static class Segment {
+        // Two generations of fingerprints: when the current one fills up it replaces the previous one,
+        // so the seen-set forgets the oldest URLs instead of growing forever
+        LongHashSet seen = new LongHashSet(64);
+        LongHashSet previousSeen = new LongHashSet(16);
+
+        boolean isSeen(long fingerprint) {
+            return seen.contains(fingerprint) || previousSeen.contains(fingerprint);
+        }
+
+        void remember(long fingerprint, int seenCapacity) {
+            if (seen.size() >= seenCapacity) {
+                previousSeen = seen;
+                seen = new LongHashSet(64);
+            }
+            seen.add(fingerprint);
+        }
+    }
+
+    // The queued URLs of one host
+    private static class HostQueue {
+        final String host;
+        final List<Entry> entries = new ArrayList<>();
+        final List<Entry> weighted = new ArrayList<>(0); // Entries with a weight above 1, also in entries
+        int extraWeight; // Sum of weight - 1 over weighted
+        volatile int index; // Position in hostList, or -1 once removed; written under hostsLock
+
+        HostQueue(String host, int index) {
+            this.host = host;
+            this.index = index;
+        }
+    }
+
+    private final int capacity;
+    private final int segmentSeenCapacity;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger weightedEntries = new AtomicInteger(); // Lets hostWeight() skip the lookup while no entry is weighted
+    private final ConcurrentHashMap<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+    private final List<HostQueue> hostList = new ArrayList<>(); // Guarded by hostsLock
+    private volatile HostQueue[] hosts = new HostQueue[0]; // Copy of hostList for lock-free reads
+    private final Object hostsLock = new Object(); // Always taken before a HostQueue lock, never after
+
+    public UrlFrontier() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UrlFrontier(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        // Remember more URLs than we queue so evicted ones are not re-added at once
+        this.segmentSeenCapacity = (this.capacity * 4 + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Add a URL unless it has been seen before, returning true if it was added.
+    // When the frontier is full an entry is evicted from the largest of the URL's own host and two
+    // random hosts. Pages mostly link within their own site, so this trims the hosts that dominate
+    // the frontier while keeping small hosts queued, and keeps eviction O(1).
+    public boolean add(String url, int depth, Random random) {
+        return add(new Entry(url, depth), random);
+    }
+
+    public boolean add(Entry entry, Random random) {
+        long fingerprint = fingerprint(entry.url);
+        Segment segment = segmentFor(fingerprint);
+        synchronized (segment) {
+            if (segment.isSeen(fingerprint)) {
+                return false;
+            }
+            segment.remember(fingerprint, segmentSeenCapacity);
+        }
+
+        String host = hostKey(entry.url);
+        HostQueue queue;
+        while (true) {
+            queue = hostQueues.get(host);
+            if (queue == null) {
+                synchronized (hostsLock) {
+                    queue = hostQueues.get(host);
+                    if (queue == null) {
+                        queue = new HostQueue(host, hostList.size());
+                        hostList.add(queue);
+                        hostQueues.put(host, queue);
+                        hosts = hostList.toArray(new HostQueue[0]);
+                    }
+                }
+            }
+            synchronized (queue) {
+                if (queue.index < 0) {
+                    continue; // Emptied and removed by an eviction in the meantime; look the host up again
+                }
+                queue.entries.add(entry);
+                if (entry.weight > 1) {
+                    queue.weighted.add(entry);
+                    queue.extraWeight += entry.weight - 1;
+                    weightedEntries.incrementAndGet();
+                }
+            }
+            break;
+        }
+        if (size.incrementAndGet() > capacity) {
+            evictOne(queue, random);
+        }
+        return true;
+    }
+
+    // Mark a fingerprint as seen without queueing a URL, e.g. when restoring a saved crawl
+    public void markSeen(long fingerprint) {
+        Segment segment = segmentFor(fingerprint);
+        synchronized (segment) {
+            if (!segment.isSeen(fingerprint)) {
+                segment.remember(fingerprint, segmentSeenCapacity);
+            }
+        }
+    }
+
+    public boolean isSeen(String url) {
+        long fingerprint = fingerprint(url);
+        Segment segment = segmentFor(fingerprint);
+        synchronized (segment) {
+            return segment.isSeen(fingerprint);
+        }
+    }
+
+    // Pick a random entry of a random host, or null if the frontier is empty
+    public Entry randomEntry(Random random) {
+        HostQueue[] current = hosts;
+        if (current.length == 0) {
+            return null;
+        }
+        return randomEntry(current[random.nextInt(current.length)].host, random);
+    }
+
+    // Pick a random entry of the given host, in proportion to the entries' weights, or null if it has none queued
+    public Entry randomEntry(String host, Random random) {
+        HostQueue queue = hostQueues.get(host);
+        if (queue == null) {
+            return null;
+        }
+        synchronized (queue) {
+            int size = queue.entries.size();
+            if (size == 0) {
+                return null;
+            }
+            if (queue.extraWeight == 0) {
+                return queue.entries.get(random.nextInt(size));
+            }
+            // Every entry holds one ticket and a weighted entry weight - 1 more
+            int ticket = random.nextInt(size + queue.extraWeight);
+            if (ticket < size) {
+                return queue.entries.get(ticket);
+            }
+            ticket -= size;
+            for (Entry entry : queue.weighted) {
+                ticket -= entry.weight - 1;
+                if (ticket < 0) {
+                    return entry;
+                }
+            }
+            return queue.entries.get(size - 1); // Not reached while extraWeight matches weighted
+        }
+    }
+
+    // Largest weight queued for the host; a scheduler gives the host that many turns per round
+    public int hostWeight(String host) {
+        if (weightedEntries.get() == 0) {
+            return 1;
+        }
+        HostQueue queue = hostQueues.get(host);
+        if (queue == null) {
+            return 1;
+        }
+        synchronized (queue) {
+            int weight = 1;
+            for (Entry entry : queue.weighted) {
+                weight = Math.max(weight, entry.weight);
+            }
+            return weight;
+        }
+    }
+
+    public int hostCount() {
+        return hosts.length;
+    }
+
+    // The host at the given position in the host list, or null if there is no such position any more
+    public String hostAt(int index) {
+        HostQueue[] current = hosts;
+        return index >= 0 && index < current.length ? current[index].host : null;
+    }
+
+    // Bring the frontier back to capacity by removing an entry from the largest of the given host and
+    // two random ones; if another thread emptied that host meanwhile, try again with other hosts
+    private void evictOne(HostQueue candidate, Random random) {
+        while (size.get() > capacity) {
+            HostQueue[] current = hosts;
+            if (current.length == 0) {
+                return;
+            }
+            HostQueue victim = candidate != null && candidate.index >= 0 ? candidate : current[random.nextInt(current.length)];
+            for (int i = 0; i < 2; i++) {
+                HostQueue other = current[random.nextInt(current.length)];
+                if (queueSize(other) > queueSize(victim)) {
+                    victim = other;
+                }
+            }
+            if (removeRandomEntry(victim, random)) {
+                return;
+            }
+            candidate = null;
+        }
+    }
+
+    // Swap-remove a random entry of the queue, returning false if it had none left
+    private boolean removeRandomEntry(HostQueue victim, Random random) {
+        boolean emptied;
+        synchronized (victim) {
+            if (victim.entries.isEmpty()) {
+                return false;
+            }
+            int last = victim.entries.size() - 1;
+            int evicted = random.nextInt(victim.entries.size());
+            Entry removed = victim.entries.get(evicted);
+            victim.entries.set(evicted, victim.entries.get(last));
+            victim.entries.remove(last);
+            if (removed.weight > 1) {
+                victim.weighted.remove(removed);
+                victim.extraWeight -= removed.weight - 1;
+                weightedEntries.decrementAndGet();
+            }
+            size.decrementAndGet();
+            emptied = victim.entries.isEmpty();
+        }
+        if (emptied) {
+            removeHostIfEmpty(victim);
+        }
+        return true;
+    }
+
+    // Drop an emptied host from the host list, unless an add refilled it first
+    private void removeHostIfEmpty(HostQueue queue) {
+        synchronized (hostsLock) {
+            synchronized (queue) {
+                if (!queue.entries.isEmpty() || queue.index < 0) {
+                    return;
+                }
+                // Swap-remove the host from the host list
+                HostQueue moved = hostList.remove(hostList.size() - 1);
+                if (moved != queue) {
+                    hostList.set(queue.index, moved);
+                    moved.index = queue.index;
+                }
+                queue.index = -1;
+                hostQueues.remove(queue.host);
+            }
+            hosts = hostList.toArray(new HostQueue[0]);
+        }
+    }
+
+    private static int queueSize(HostQueue queue) {
+        synchronized (queue) {
+            return queue.entries.size();
+        }
+    }
+
+    // Receives the contents of the frontier, one host or segment at a time
+    public interface Visitor {
+        void visitEntry(Entry entry);
+
+        void visitSeen(long fingerprint);
+    }
+
+    // Visit every queued entry and then every remembered fingerprint.
+    // Each host queue and segment is copied under its lock and visited outside it, so slow visitors do not block the crawl.
+    public void snapshot(Visitor visitor) {
+        for (HostQueue queue : hosts) {
+            List<Entry> entries;
+            synchronized (queue) {
+                entries = new ArrayList<>(queue.entries);
+            }
+            for (Entry entry : entries) {
+                visitor.visitEntry(entry);
+            }
+        }
+        for (Segment segment : segments) {
+            long[] fingerprints;
+            synchronized (segment) {
+                fingerprints = new long[segment.previousSeen.size() + segment.seen.size()];
+                int count = segment.previousSeen.copyTo(fingerprints, 0);
+                segment.seen.copyTo(fingerprints, count);
+            }
+            for (long fingerprint : fingerprints) {
+                visitor.visitSeen(fingerprint);
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        return segments[(int) (fingerprint >>> 60) & (SEGMENT_COUNT - 1)]; // High bits, independent of LongHashSet indexing
+    }
+
+    // The host a URL is queued under; URLs without a recognisable host share one queue
+    static String hostKey(String url) {
+        String host = BlacklistMatcher.hostOf(url);
+        return host != null ? host : "";
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars, finished with a murmur3 avalanche step
+    public static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash; // Zero marks an empty slot in LongHashSet
+    }
+}
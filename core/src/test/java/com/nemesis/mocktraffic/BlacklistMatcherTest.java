@@ -0,0 +1,80 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BlacklistMatcherTest {
+    // The blacklisted_urls entries shipped in assets/config.json
+    private static final List<String> CONFIG_BLACKLIST = Arrays.asList(
+            "https://t.co", "t.umblr.com", "messenger.com", "itunes.apple.com", "l.facebook.com",
+            "bit.ly", "mediawiki", ".css", ".ico", ".xml", "intent/tweet", "twitter.com/share",
+            "dialog/feed?", ".json", "zendesk", "clickserve", ".png", ".iso");
+
+    // The semantics the matcher replaces: a URL is blacklisted if it contains any entry
+    private static boolean naiveMatches(List<String> blacklist, String url) {
+        for (String entry : blacklist) {
+            if (url.contains(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void matches_agreesWithContainsOnKnownUrls() {
+        BlacklistMatcher matcher = new BlacklistMatcher(CONFIG_BLACKLIST);
+        String[] urls = {
+                "https://t.co/abc", "https://www.messenger.com/", "https://example.com/style.css",
+                "https://example.com/feed.xml?x=1", "https://twitter.com/share?url=x",
+                "https://www.reddit.com/r/all", "https://github.com/", "https://example.com/icons",
+                "https://example.com/a.json", "https://help.zendesk.com/", "https://en.wikipedia.org/wiki/Bit",
+                "https://bit.ly/xyz", "https://example.com/dialog/feed", "https://example.com/dialog/feed?app=1",
+                "https://example.com/\u00e9t\u00e9.png", ""
+        };
+        for (String url : urls) {
+            assertEquals(url, naiveMatches(CONFIG_BLACKLIST, url), matcher.matches(url));
+        }
+    }
+
+    @Test
+    public void matches_agreesWithContainsOnRandomInput() {
+        // Small alphabet and overlapping patterns exercise the failure links
+        List<String> blacklist = Arrays.asList("aba", "bab", "abc", "c", "bbbb", "ab\u00e9");
+        BlacklistMatcher matcher = new BlacklistMatcher(blacklist);
+        Random random = new Random(7);
+        char[] chars = {'a', 'b', 'c', 'd', '\u00e9', '/'};
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder url = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                url.append(chars[random.nextInt(chars.length)]);
+            }
+            String s = url.toString();
+            assertEquals(s, naiveMatches(blacklist, s), matcher.matches(s));
+        }
+    }
+
+    @Test
+    public void matches_emptyRuleMatchesEverythingLikeContains() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Collections.singletonList(""));
+        assertTrue(matcher.matches("https://example.com/"));
+    }
+
+    @Test
+    public void matches_hostRulesCoverSubdomains() {
+        BlacklistMatcher matcher = new BlacklistMatcher(Collections.<String>emptyList(),
+                Arrays.asList("facebook.com", ".doubleclick.net"));
+        assertTrue(matcher.matches("https://facebook.com/"));
+        assertTrue(matcher.matches("https://www.FaceBook.com:443/home"));
+        assertTrue(matcher.matches("https://ad.doubleclick.net?x"));
+        assertFalse(matcher.matches("https://notfacebook.com/"));
+        assertFalse(matcher.matches("https://example.com/facebook.com"));
+        assertFalse(matcher.matches("https://com/"));
+    }
+}
@@ -0,0 +1,172 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+import static org.junit.Assert.*;
+
+public class DnsNoiseGeneratorTest {
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+    // Answers "*.ok.example" with one loopback address and fails everything else, optionally blocking until released
+    private static class StubResolver implements Dns {
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch release;
+
+        StubResolver(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            lookups.incrementAndGet();
+            int now = concurrent.incrementAndGet();
+            int max;
+            while (now > (max = maxConcurrent.get()) && !maxConcurrent.compareAndSet(max, now)) {
+                // Retry until the maximum is at least now
+            }
+            try {
+                if (release != null) {
+                    release.await();
+                }
+                if (!hostname.endsWith(".ok.example")) {
+                    throw new UnknownHostException(hostname);
+                }
+                return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{127, 0, 0, 1}));
+            } catch (InterruptedException e) {
+                throw new UnknownHostException(hostname);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+
+    private static DnsNoiseGenerator.HostSource cycling(final String... hosts) {
+        final AtomicInteger next = new AtomicInteger();
+        return new DnsNoiseGenerator.HostSource() {
+            @Override
+            public String nextHost() {
+                return hosts[next.getAndIncrement() % hosts.length];
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void lookup_countsSuccessesAndFailures() {
+        StubResolver resolver = new StubResolver(null);
+        DnsNoiseGenerator generator = new DnsNoiseGenerator(resolver, cycling("a.ok.example"), 0, 1);
+        generator.lookup("a.ok.example");
+        generator.lookup("b.ok.example");
+        generator.lookup("missing.example");
+        assertEquals(3, generator.getLookupsStarted());
+        assertEquals(2, generator.getLookupsSucceeded());
+        assertEquals(1, generator.getLookupsFailed());
+        assertEquals(2, generator.getAddressesResolved());
+        assertEquals(3, generator.lookupLatency.count());
+
+        StringBuilder json = new StringBuilder();
+        generator.appendJson(json);
+        assertTrue(json.toString(), json.toString().startsWith("{\"started\":3,\"succeeded\":2,\"failed\":1,"));
+    }
+
+    @Test
+    public void tick_issuesTheConfiguredRateOnAverage() {
+        final AtomicInteger picked = new AtomicInteger();
+        DnsNoiseGenerator generator = new DnsNoiseGenerator(new StubResolver(null), new DnsNoiseGenerator.HostSource() {
+            @Override
+            public String nextHost() {
+                picked.incrementAndGet();
+                return "a.ok.example";
+            }
+        }, 50, 8);
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            generator.tick(random); // Ten seconds of 100 ms ticks
+        }
+        assertEquals(500, picked.get(), 50);
+        assertEquals(picked.get(), generator.getLookupsDropped()); // Not started, so nothing is resolved
+
+        picked.set(0);
+        generator.setRateFactor(0.5);
+        for (int i = 0; i < 100; i++) {
+            generator.tick(random);
+        }
+        assertEquals(250, picked.get(), 25);
+    }
+
+    @Test
+    public void start_resolvesThroughTheLookupPool() throws InterruptedException {
+        StubResolver resolver = new StubResolver(null);
+        DnsNoiseGenerator generator = new DnsNoiseGenerator(resolver, cycling("a.ok.example", "b.ok.example"), 50, 8);
+        generator.start(scheduler);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (generator.getLookupsSucceeded() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        generator.stop();
+        assertTrue(generator.getLookupsSucceeded() >= 10);
+        assertEquals(0, generator.getLookupsFailed());
+    }
+
+    @Test
+    public void start_runsLookupsConcurrentlyUpToTheLimit() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        StubResolver resolver = new StubResolver(release);
+        DnsNoiseGenerator generator = new DnsNoiseGenerator(resolver, cycling("a.ok.example"), 200, 4);
+        generator.start(scheduler);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((resolver.concurrent.get() < 4 || generator.getLookupsDropped() == 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, resolver.maxConcurrent.get());
+        assertTrue(generator.getLookupsDropped() > 0);
+        release.countDown();
+        generator.stop();
+    }
+
+    @Test
+    public void pickHost_mixesFrontierAndRootHosts() {
+        UrlFrontier frontier = new UrlFrontier();
+        List<String> rootHosts = Arrays.asList("root.example");
+        assertEquals("root.example", DnsNoiseGenerator.pickHost(frontier, rootHosts, 0));
+        frontier.add("https://crawled.example/", 1, new Random(1));
+        int roots = 0;
+        for (int i = 0; i < 1000; i++) {
+            String host = DnsNoiseGenerator.pickHost(frontier, rootHosts, 0.25);
+            if (host.equals("root.example")) {
+                roots++;
+            } else {
+                assertEquals("crawled.example", host); // Only real host names, never invented ones
+            }
+        }
+        assertTrue("roots " + roots, roots > 150 && roots < 350);
+        assertNull(DnsNoiseGenerator.pickHost(new UrlFrontier(), Collections.<String>emptyList(), 0.25));
+    }
+
+    @Test
+    public void pickHost_skipsAddresses() {
+        UrlFrontier frontier = new UrlFrontier();
+        assertNull(DnsNoiseGenerator.pickHost(frontier, Arrays.asList("192.168.1.1"), 1));
+        assertNull(DnsNoiseGenerator.pickHost(frontier, Arrays.asList("::1"), 1));
+        assertEquals("10.example", DnsNoiseGenerator.pickHost(frontier, Arrays.asList("10.example"), 1));
+    }
+}
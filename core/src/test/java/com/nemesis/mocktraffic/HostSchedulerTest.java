@@ -0,0 +1,107 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HostSchedulerTest {
+    private static final long SECOND = 1000000000L;
+    private final Random random = new Random(7);
+
+    private static UrlFrontier frontierWithHosts(int hosts, int pagesPerHost) {
+        UrlFrontier frontier = new UrlFrontier(100000);
+        Random random = new Random(1);
+        for (int h = 0; h < hosts; h++) {
+            for (int p = 0; p < pagesPerHost; p++) {
+                frontier.add("https://host" + h + ".example/page/" + p, 0, random);
+            }
+        }
+        return frontier;
+    }
+
+    @Test
+    public void next_givesWeightedSeedHostsMoreTurns() {
+        UrlFrontier frontier = new UrlFrontier();
+        frontier.add(new UrlFrontier.Entry("https://heavy.example/", 0, 3), random);
+        frontier.add("https://light.example/", 0, random);
+        HostScheduler scheduler = new HostScheduler(frontier, 6000000, 100000);
+        int heavy = 0;
+        for (int i = 0; i < 4000; i++) {
+            if (scheduler.next(random, 0).url.startsWith("https://heavy.")) {
+                heavy++;
+            }
+        }
+        assertEquals(3000, heavy, 200); // Three turns for every one of the unweighted host
+    }
+
+    @Test
+    public void next_spreadsRequestsAcrossHosts() {
+        UrlFrontier frontier = frontierWithHosts(4, 1);
+        for (int p = 0; p < 1000; p++) {
+            frontier.add("https://host0.example/more/" + p, 0, random); // host0 dominates the frontier
+        }
+        HostScheduler scheduler = new HostScheduler(frontier, 60000, 1000);
+        Map<String, Integer> perHost = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            String host = UrlFrontier.hostKey(scheduler.next(random, 0).url);
+            Integer count = perHost.get(host);
+            perHost.put(host, count == null ? 1 : count + 1);
+        }
+        assertEquals(4, perHost.size());
+        for (int count : perHost.values()) {
+            assertEquals(100, count);
+        }
+    }
+
+    @Test
+    public void next_enforcesTokenBucket() {
+        UrlFrontier frontier = frontierWithHosts(1, 10);
+        HostScheduler scheduler = new HostScheduler(frontier, 6, 2); // One token every 10 seconds
+        assertNotNull(scheduler.next(random, 0));
+        assertNotNull(scheduler.next(random, 0));
+        assertNull(scheduler.next(random, 0));
+        assertNull(scheduler.next(random, 9 * SECOND));
+        assertNotNull(scheduler.next(random, 10 * SECOND));
+        assertNull(scheduler.next(random, 10 * SECOND));
+    }
+
+    @Test
+    public void onResponse_backsOffOnTooManyRequestsAndServerErrors() {
+        UrlFrontier frontier = frontierWithHosts(2, 1);
+        HostScheduler scheduler = new HostScheduler(frontier, 60000, 1000);
+        scheduler.onResponse("host0.example", 429, "3600", 0); // Out for the maximum backoff
+        for (int i = 0; i < 10; i++) {
+            assertEquals("host1.example", UrlFrontier.hostKey(scheduler.next(random, SECOND).url));
+        }
+
+        // Consecutive failures double the backoff; a success resets it
+        scheduler.onResponse("host1.example", 503, null, 0);
+        scheduler.onResponse("host1.example", 500, null, 0);
+        assertNull(scheduler.next(random, (HostScheduler.BASE_BACKOFF_MS * 2 - 1) * 1000000L));
+        assertNotNull(scheduler.next(random, HostScheduler.BASE_BACKOFF_MS * 2 * 1000000L));
+        scheduler.onResponse("host1.example", 200, null, 0);
+        scheduler.onResponse("host1.example", 502, null, 100 * SECOND);
+        assertNotNull(scheduler.next(random, 100 * SECOND + HostScheduler.BASE_BACKOFF_MS * 1000000L));
+
+        // 404 says nothing about load and does not throttle
+        scheduler.onResponse("host1.example", 404, null, 200 * SECOND);
+        assertEquals("host1.example", UrlFrontier.hostKey(scheduler.next(random, 200 * SECOND).url));
+    }
+
+    @Test
+    public void onResponse_honoursRetryAfter() {
+        UrlFrontier frontier = frontierWithHosts(1, 1);
+        HostScheduler scheduler = new HostScheduler(frontier, 60000, 1000);
+        scheduler.onResponse("host0.example", 429, "120", 0);
+        assertNull(scheduler.next(random, 119 * SECOND));
+        assertNotNull(scheduler.next(random, 120 * SECOND));
+
+        assertEquals(0, HostScheduler.parseRetryAfterMs("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertEquals(0, HostScheduler.parseRetryAfterMs(null));
+        assertEquals(HostScheduler.MAX_BACKOFF_MS, HostScheduler.parseRetryAfterMs("86400"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LinkCacheTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void get_returnsFreshLinksAndCountsHitsAndMisses() {
+        LinkCache cache = new LinkCache(10, 60000);
+        assertNull(cache.get("https://example.com/", 0));
+        cache.put("https://example.com/", Arrays.asList("https://example.com/a", "https://example.com/b"), 0);
+        assertEquals(Arrays.asList("https://example.com/a", "https://example.com/b"), cache.get("https://example.com/", 59 * SECOND));
+        assertNull(cache.get("https://example.com/", 60 * SECOND)); // Expired
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        StringBuilder json = new StringBuilder();
+        cache.appendJson(json);
+        assertEquals("{\"hits\":1,\"misses\":2,\"size\":0}", json.toString());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        LinkCache cache = new LinkCache(2, 60000);
+        cache.put("https://example.com/1", Collections.<String>emptyList(), 0);
+        cache.put("https://example.com/2", Collections.<String>emptyList(), 0);
+        assertNotNull(cache.get("https://example.com/1", 0)); // 2 is now the least recently used
+        cache.put("https://example.com/3", Collections.<String>emptyList(), 0);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("https://example.com/1", 0));
+        assertNull(cache.get("https://example.com/2", 0));
+        assertNotNull(cache.get("https://example.com/3", 0));
+    }
+
+    @Test
+    public void put_isIgnoredWithoutTtl() {
+        LinkCache cache = new LinkCache(2, 0);
+        cache.put("https://example.com/", Collections.singletonList("https://example.com/a"), 0);
+        assertNull(cache.get("https://example.com/", 0));
+    }
+}
@@ -0,0 +1,94 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.HttpUrl;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class LinkExtractorTest {
+    private static final HttpUrl BASE = HttpUrl.get("https://example.com/dir/page.html");
+
+    private static List<String> extract(String html, long maxBytes, int maxLinks) throws IOException {
+        return LinkExtractor.extractStreaming(new Buffer().writeUtf8(html), BASE, maxBytes, maxLinks);
+    }
+
+    @Test
+    public void extractStreaming_resolvesHrefsLikeJsoup() throws IOException {
+        String html = "<!DOCTYPE html><html><head><title>x</title></head><body>"
+                + "<a href=\"/absolute\">1</a>"
+                + "<A HREF='relative?a=1&amp;b=2'>2</A>"
+                + "<a class=x href=https://other.org/unquoted>3</a>"
+                + "<a\n  data-x=\"a > b\"\n  href = \"#top\" >4</a>"
+                + "<a href=\"mailto:someone@example.com\">5</a>"
+                + "<p>1 < 2</p><a href=\"//cdn.example.net/x\">6</a>"
+                + "</body></html>";
+        List<String> expected = Arrays.asList(
+                "https://example.com/absolute",
+                "https://example.com/dir/relative?a=1&b=2",
+                "https://other.org/unquoted",
+                "https://example.com/dir/page.html#top",
+                "https://cdn.example.net/x");
+        assertEquals(expected, extract(html, Long.MAX_VALUE, 100));
+
+        assertEquals(expected, LinkExtractor.extractWithJsoup(html, BASE.toString(), 100));
+    }
+
+    @Test
+    public void extractStreaming_skipsCommentsAndScripts() throws IOException {
+        String html = "<!-- <a href=\"/commented\">x</a> -->"
+                + "<script>var s = '<a href=\"/scripted\">';</script>"
+                + "<style>a[href] { color: red }</style>"
+                + "<a href=\"/real\">y</a>";
+        assertEquals(Arrays.asList("https://example.com/real"), extract(html, Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    public void extractStreaming_honoursBaseHref() throws IOException {
+        String html = "<head><base href=\"https://base.example.org/root/\"></head><a href=\"child\">x</a>";
+        assertEquals(Arrays.asList("https://base.example.org/root/child"), extract(html, Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    public void extractWithJsoup_followsTheSameTagsAsStreaming() throws IOException {
+        String html = "<map><area href=\"/map-target\"></map>"
+                + "<base href=\"https://base.example.org/root/\"><a href=\"child\">x</a><link href=\"/style.css\">";
+        List<String> expected = Arrays.asList("https://example.com/map-target", "https://base.example.org/root/child");
+        assertEquals(expected, extract(html, Long.MAX_VALUE, 100));
+        assertEquals(expected, LinkExtractor.extractWithJsoup(html, BASE.toString(), 100));
+    }
+
+    @Test
+    public void readHtml_stopsAtTheByteBudget() throws IOException {
+        Buffer body = new Buffer().writeUtf8("<a href=\"/p0\">x</a><a href=\"/p1\">x</a>");
+        String html = LinkExtractor.readHtml(body, null, 30);
+        assertEquals(30, html.length());
+        assertEquals(Arrays.asList("https://example.com/p0"), LinkExtractor.extractWithJsoup(html, BASE.toString(), 100));
+        assertFalse(body.exhausted()); // The rest of the body is left for the caller to drop
+    }
+
+    @Test
+    public void extractStreaming_stopsAtBudgets() throws IOException {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            html.append("<a href=\"/p").append(i).append("\">x</a>");
+        }
+        assertEquals(10, extract(html.toString(), Long.MAX_VALUE, 10).size());
+        // The first link tag is 20 bytes long; a 30 byte budget cuts the second one short
+        assertEquals(Arrays.asList("https://example.com/p0"), extract(html.toString(), 30, 100));
+    }
+
+    @Test
+    public void canonicalizer_dropsFragmentsAndTrackingParams() throws IOException {
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_STRIPPED_PARAMS);
+        String html = "<a href=\"/a#top\">1</a><a href=\"/a?utm_source=feed\">2</a><a href=\"mailto:x@example.com\">3</a>";
+        List<String> expected = Arrays.asList("https://example.com/a", "https://example.com/a");
+        assertEquals(expected, new LinkExtractor(new Buffer().writeUtf8(html), BASE, Long.MAX_VALUE, 100, canonicalizer).extract());
+        assertEquals(expected, LinkExtractor.extractWithJsoup(html, BASE.toString(), 100, canonicalizer));
+    }
+}
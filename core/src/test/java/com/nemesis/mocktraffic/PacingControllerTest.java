@@ -0,0 +1,76 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PacingControllerTest {
+    private static final long MS = 1000000L;
+    private static final long SECOND = 1000 * MS;
+    private final Random random = new Random(5);
+
+    @Test
+    public void nextDelayMs_spreadsTargetRateOverSessionsWithJitter() {
+        PacingController pacing = new PacingController(60, 8, 25, 5000);
+        long total = 0;
+        for (int i = 0; i < 10000; i++) {
+            long delay = pacing.nextDelayMs(4, random); // 4 sessions at 60 rpm: one request per session every 4 s
+            assertTrue("delay " + delay, delay >= 3000 && delay <= 5000);
+            total += delay;
+        }
+        assertEquals(4000, total / 10000.0, 50);
+    }
+
+    @Test
+    public void tryAcquire_enforcesInFlightLimit() {
+        PacingController pacing = new PacingController(60, 2, 0, 5000);
+        assertTrue(pacing.tryAcquire());
+        assertTrue(pacing.tryAcquire());
+        assertFalse(pacing.tryAcquire());
+        pacing.onComplete(100 * MS, false, 0);
+        assertTrue(pacing.tryAcquire());
+        pacing.release();
+        assertEquals(1, pacing.getInFlight());
+    }
+
+    @Test
+    public void setTarget_keepsCallsInFlightAndRateScale() {
+        PacingController pacing = new PacingController(60, 2, 0, 2000);
+        assertTrue(pacing.tryAcquire());
+        assertTrue(pacing.tryAcquire());
+        pacing.onComplete(500 * MS, true, 0);
+        assertTrue(pacing.tryAcquire());
+
+        pacing.setTarget(120, 1, 0, 2000);
+        assertEquals(2, pacing.getInFlight());
+        assertFalse(pacing.tryAcquire()); // Over the new limit until enough calls finish
+        assertEquals(0.7, pacing.getRateScale(), 1e-9);
+        assertEquals(84, pacing.getCurrentRequestsPerMinute(), 1e-9);
+    }
+
+    @Test
+    public void onComplete_cutsRateOnErrorsAndSlowResponsesThenRecovers() {
+        PacingController pacing = new PacingController(60, 100, 0, 2000);
+        pacing.onComplete(500 * MS, true, 0);
+        assertEquals(0.7, pacing.getRateScale(), 1e-9);
+        // Further bad news within the cooldown does not cut again
+        pacing.onComplete(500 * MS, true, SECOND / 2);
+        assertEquals(0.7, pacing.getRateScale(), 1e-9);
+        assertEquals(1000 / 0.7, pacing.nextDelayMs(1, random), 1);
+
+        // Latency well above the target keeps cutting, once per cooldown, down to the floor
+        for (int i = 0; i < 100; i++) {
+            pacing.onComplete(30 * SECOND, false, (i + 1) * SECOND);
+        }
+        assertEquals(PacingController.MIN_SCALE, pacing.getRateScale(), 1e-9);
+
+        // Fast responses bring the average latency down and the rate back up step by step
+        for (int i = 0; i < 200; i++) {
+            pacing.onComplete(100 * MS, false, 200 * SECOND);
+        }
+        assertEquals(1, pacing.getRateScale(), 1e-9);
+        assertEquals(60, pacing.getCurrentRequestsPerMinute(), 1e-9);
+    }
+}
@@ -0,0 +1,45 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RequestMixTest {
+    private final Random random = new Random(3);
+
+    private Map<RequestMix.Mode, Integer> sample(RequestMix mix, boolean wantLinks, int draws) {
+        Map<RequestMix.Mode, Integer> counts = new EnumMap<>(RequestMix.Mode.class);
+        for (RequestMix.Mode mode : RequestMix.Mode.values()) {
+            counts.put(mode, 0);
+        }
+        for (int i = 0; i < draws; i++) {
+            RequestMix.Mode mode = mix.pick(random, wantLinks);
+            counts.put(mode, counts.get(mode) + 1);
+        }
+        return counts;
+    }
+
+    @Test
+    public void pick_followsWeights() {
+        Map<RequestMix.Mode, Integer> counts = sample(new RequestMix(40, 20, 25, 15), true, 100000);
+        assertEquals(40000, counts.get(RequestMix.Mode.FULL), 1000);
+        assertEquals(20000, counts.get(RequestMix.Mode.HEAD), 1000);
+        assertEquals(25000, counts.get(RequestMix.Mode.RANGE), 1000);
+        assertEquals(15000, counts.get(RequestMix.Mode.CANCEL), 1000);
+    }
+
+    @Test
+    public void pick_avoidsFullWhenLinksAreNotWanted() {
+        Map<RequestMix.Mode, Integer> counts = sample(new RequestMix(90, 0, 5, 5), false, 10000);
+        assertEquals(0, (int) counts.get(RequestMix.Mode.FULL));
+        assertEquals(0, (int) counts.get(RequestMix.Mode.HEAD));
+        assertEquals(5000, counts.get(RequestMix.Mode.RANGE), 300);
+
+        assertEquals(10000, (int) sample(new RequestMix(1, 0, 0, 0), false, 10000).get(RequestMix.Mode.FULL));
+        assertEquals(RequestMix.Mode.FULL, new RequestMix(0, 0, 0, 0).pick(random, true));
+    }
+}
@@ -0,0 +1,48 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ThrottlePolicyTest {
+    private final ThrottlePolicy policy = new ThrottlePolicy(true);
+
+    private static ThrottlePolicy.DeviceState state(boolean metered, boolean charging, int battery) {
+        return new ThrottlePolicy.DeviceState(true, metered, charging, battery, false, false);
+    }
+
+    @Test
+    public void rateFactor_prefersChargingOnUnmeteredNetworks() {
+        assertEquals(1, policy.rateFactor(state(false, true, 80)), 0);
+        assertEquals(ThrottlePolicy.BATTERY_FACTOR, policy.rateFactor(state(false, false, 80)), 0);
+        assertEquals(ThrottlePolicy.HALF_BATTERY_FACTOR, policy.rateFactor(state(false, false, 30)), 0);
+        assertEquals(ThrottlePolicy.LOW_BATTERY_FACTOR, policy.rateFactor(state(false, false, 10)), 0);
+        assertEquals(ThrottlePolicy.METERED_CHARGING_FACTOR, policy.rateFactor(state(true, true, 10)), 0);
+        assertEquals(ThrottlePolicy.METERED_FACTOR, policy.rateFactor(state(true, false, 90)), 0);
+        assertEquals(ThrottlePolicy.BATTERY_FACTOR, policy.rateFactor(state(false, false, -1)), 0); // Unknown level
+    }
+
+    @Test
+    public void rateFactor_pausesInDozeOrOfflineAndHalvesInBatterySaver() {
+        assertEquals(0, policy.rateFactor(new ThrottlePolicy.DeviceState(true, false, true, 100, true, false)), 0);
+        assertEquals(0, policy.rateFactor(new ThrottlePolicy.DeviceState(false, false, true, 100, false, false)), 0);
+        assertEquals(0.5, policy.rateFactor(new ThrottlePolicy.DeviceState(true, false, true, 100, false, true)), 0);
+        assertEquals(1, new ThrottlePolicy(false).rateFactor(new ThrottlePolicy.DeviceState(false, true, false, 5, true, true)), 0);
+    }
+
+    @Test
+    public void pacingThrottle_scalesRateAndConcurrency() {
+        PacingController pacing = new PacingController(60, 4, 0, 5000);
+        pacing.setThrottle(0.5);
+        assertEquals(2000, pacing.nextDelayMs(1, new Random(1)));
+        assertTrue(pacing.tryAcquire());
+        assertTrue(pacing.tryAcquire());
+        assertFalse(pacing.tryAcquire()); // Half of four slots
+        pacing.setThrottle(0);
+        pacing.release();
+        assertFalse(pacing.tryAcquire()); // Paused
+        assertEquals(1000, pacing.nextDelayMs(1, new Random(1))); // Polls at the unthrottled pace
+    }
+}
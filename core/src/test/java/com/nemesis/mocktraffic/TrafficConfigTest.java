@@ -0,0 +1,173 @@
+package com.nemesis.mocktraffic;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrafficConfigTest {
+    // Write config.bin by hand, so the reader is checked against the layout rather than against writeBinary
+    private static byte[] compiledConfig(boolean includeRootUrls) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TrafficConfig.BINARY_MAGIC);
+        out.writeInt(TrafficConfig.BINARY_VERSION);
+        out.writeInt(4);
+        out.writeUTF("max_depth");
+        out.writeInt(3);
+        out.writeUTF("min_sleep");
+        out.writeInt(100);
+        out.writeUTF("max_sleep");
+        out.writeInt(200);
+        out.writeUTF("cancel_after_budget");
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeUTF("link_extraction");
+        out.writeUTF("jsoup");
+        out.writeInt(includeRootUrls ? 2 : 1);
+        out.writeUTF("blacklisted_urls");
+        out.writeInt(1);
+        out.writeUTF(".css");
+        if (includeRootUrls) {
+            out.writeUTF("root_urls");
+            out.writeInt(2);
+            out.writeUTF("https://example.com");
+            out.writeUTF("https://example.org");
+        }
+        out.writeInt(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void readBinary_readsSettingsAndAppliesDefaults() throws IOException {
+        TrafficConfig config = TrafficConfig.readBinary(new ByteArrayInputStream(compiledConfig(true)));
+        assertEquals(Arrays.asList("https://example.com/", "https://example.org/"), config.rootUrls);
+        assertEquals(Arrays.asList(".css"), config.blacklistedUrls);
+        assertTrue(config.blacklistedHosts.isEmpty());
+        assertEquals(3, config.maxDepth);
+        assertEquals(100, config.minSleep);
+        assertEquals(200, config.maxSleep);
+        assertFalse(config.cancelAfterBudget);
+        assertTrue(config.useJsoupExtraction);
+        assertEquals(60000, config.timeout);
+        assertEquals(UrlFrontier.DEFAULT_CAPACITY, config.frontierCapacity);
+        assertEquals(RequestMix.Mode.FULL, config.requestMix.pick(new Random(), false)); // Every visit a full GET unless a mix is configured
+        assertEquals(400, config.targetRequestsPerMinute); // One session sleeping 100..200 ms
+        assertEquals(33, config.pacingJitterPercent);
+        assertTrue(config.buildBlacklistMatcher().matches("https://example.com/a.css"));
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinary_rejectsMissingRequiredKeys() throws IOException {
+        TrafficConfig.readBinary(new ByteArrayInputStream(compiledConfig(false)));
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinary_rejectsOtherFiles() throws IOException {
+        TrafficConfig.readBinary(new ByteArrayInputStream("{\"root_urls\": []}".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void writeBinary_roundTripsThroughReadBinary() throws Exception {
+        String json = "{\"max_depth\": 2, \"min_sleep\": 100, \"max_sleep\": 300, \"cancel_after_budget\": false,"
+                + " \"link_extraction\": \"jsoup\", \"blacklisted_urls\": [\".css\"], \"user_agents\": [\"Mozilla/5.0\"],"
+                + " \"root_urls\": [\"https://example.org\", {\"url\": \"https://example.com\", \"weight\": 5}]}";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TrafficConfig.writeBinary(json, bytes);
+        TrafficConfig expected = TrafficConfig.fromJson(json);
+        TrafficConfig config = TrafficConfig.readBinary(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(expected.rootUrls, config.rootUrls);
+        assertEquals(5, config.seeds.get(1).weight);
+        assertEquals(expected.blacklistedUrls, config.blacklistedUrls);
+        assertEquals(2, config.maxDepth);
+        assertEquals(100, config.minSleep);
+        assertEquals(300, config.maxSleep);
+        assertFalse(config.cancelAfterBudget);
+        assertTrue(config.useJsoupExtraction);
+        assertFalse(new String(bytes.toByteArray(), "UTF-8").contains("user_agents"));
+
+        ByteArrayOutputStream again = new ByteArrayOutputStream();
+        TrafficConfig.writeBinary(json, again);
+        assertArrayEquals(bytes.toByteArray(), again.toByteArray());
+    }
+
+    @Test
+    public void seeds_areCanonicalizedMergedAndWeighted() throws Exception {
+        TrafficConfig config = TrafficConfig.fromJson("{\"max_depth\": 1, \"min_sleep\": 1, \"max_sleep\": 2,"
+                + " \"blacklisted_urls\": [], \"root_urls\": ["
+                + "\"http://www.Example.com/\", {\"url\": \"https://example.com\", \"weight\": 3},"
+                + " \"https://example.com/#top\", \"https://example.org/news?utm_source=x\", {\"url\": \"https://example.org/news/\"}]}");
+        assertEquals(Arrays.asList("https://example.com/", "https://example.org/news"), config.rootUrls);
+        assertEquals(3, config.seeds.get(0).weight);
+        assertEquals(1, config.seeds.get(1).weight);
+    }
+
+    @Test
+    public void sleepRangeIsOptionalWithExplicitPacing() throws Exception {
+        TrafficConfig config = TrafficConfig.fromJson("{\"max_depth\": 1, \"blacklisted_urls\": [], \"root_urls\": [],"
+                + " \"sessions\": 2, \"target_requests_per_minute\": 60, \"pacing_jitter_percent\": 25}");
+        assertEquals(60, config.targetRequestsPerMinute);
+        assertEquals(1500, config.minSleep); // Two sessions at 60 rpm: 2 s per session, +-25%
+        assertEquals(2500, config.maxSleep);
+    }
+
+    @Test(expected = JSONException.class)
+    public void sleepRangeIsRequiredWithoutPacing() throws Exception {
+        TrafficConfig.fromJson("{\"max_depth\": 1, \"blacklisted_urls\": [], \"root_urls\": [], \"target_requests_per_minute\": 60}");
+    }
+
+    @Test
+    public void withOverrides_replacesOnlyGivenKeys() throws Exception {
+        TrafficConfig config = TrafficConfig.readBinary(new ByteArrayInputStream(compiledConfig(true)));
+        TrafficConfig overridden = config.withOverrides("{\"target_requests_per_minute\": 120, \"blacklisted_urls\": [\".js\"]}");
+        assertEquals(120, overridden.targetRequestsPerMinute);
+        assertEquals(config.pacingJitterPercent, overridden.pacingJitterPercent);
+        assertEquals(config.rootUrls, overridden.rootUrls);
+        assertEquals(Arrays.asList(".js"), overridden.blacklistedUrls);
+        assertTrue(overridden.useJsoupExtraction);
+        assertEquals(400, config.targetRequestsPerMinute); // The original is unchanged
+    }
+
+    @Test(expected = JSONException.class)
+    public void withOverrides_rejectsInvalidJson() throws Exception {
+        TrafficConfig.readBinary(new ByteArrayInputStream(compiledConfig(true))).withOverrides("{\"min_sleep\": ");
+    }
+
+    @Test
+    public void readBinary_readsWeightedLists() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TrafficConfig.BINARY_MAGIC);
+        out.writeInt(TrafficConfig.BINARY_VERSION);
+        out.writeInt(3);
+        for (String key : new String[]{"max_depth", "min_sleep", "max_sleep"}) {
+            out.writeUTF(key);
+            out.writeInt(1);
+        }
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeUTF("blacklisted_urls");
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeUTF("root_urls");
+        out.writeInt(2);
+        out.writeUTF("https://example.com/");
+        out.writeInt(5);
+        out.writeUTF("https://example.org/");
+        out.writeInt(1);
+        out.flush();
+
+        TrafficConfig config = TrafficConfig.readBinary(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(Arrays.asList("https://example.com/", "https://example.org/"), config.rootUrls);
+        assertEquals(5, config.seeds.get(0).weight);
+        assertEquals(UrlCanonicalizer.DEFAULT_STRIPPED_PARAMS, config.strippedQueryParams);
+    }
+}
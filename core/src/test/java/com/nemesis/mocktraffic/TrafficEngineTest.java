@@ -0,0 +1,218 @@
+package com.nemesis.mocktraffic;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import okhttp3.Dns;
+
+import static org.junit.Assert.*;
+
+public class TrafficEngineTest {
+    private final MockWebServer server = new MockWebServer();
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+    private final TrafficMetrics metrics = new TrafficMetrics();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final CountDownLatch exhausted = new CountDownLatch(1);
+    private final Set<String> requestedPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final CountDownLatch allPagesRequested = new CountDownLatch(3);
+
+    @Before
+    public void setUp() throws IOException {
+        // /a links to /b and /c, /b links back to /a, /c is a dead end
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (requestedPaths.add(request.getPath())) {
+                    allPagesRequested.countDown();
+                }
+                String links;
+                if ("/a".equals(request.getPath())) {
+                    links = "<a href=\"/b\">b</a><a href=\"/c\">c</a>";
+                } else if ("/b".equals(request.getPath())) {
+                    links = "<a href=\"/a\">a</a>";
+                } else if ("/c".equals(request.getPath())) {
+                    links = "";
+                } else {
+                    return new MockResponse.Builder().code(404).build();
+                }
+                return new MockResponse.Builder()
+                        .addHeader("Content-Type", "text/html; charset=utf-8")
+                        .body("<html><body>" + links + "</body></html>")
+                        .build();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    private static TrafficConfig newConfig(List<String> rootUrls, List<String> blacklist) throws Exception {
+        JSONObject json = new JSONObject();
+        json.put("root_urls", new JSONArray(rootUrls));
+        json.put("blacklisted_urls", new JSONArray(blacklist));
+        json.put("max_depth", 5);
+        json.put("min_sleep", 10);
+        json.put("max_sleep", 20);
+        json.put("sessions", 2);
+        json.put("target_requests_per_minute", 6000);
+        json.put("host_requests_per_minute", 6000);
+        json.put("dns_queries_per_second", 0);
+        return TrafficConfig.fromJson(json.toString());
+    }
+
+    private TrafficEngine newEngine(TrafficConfig config) {
+        return new TrafficEngine(config, metrics, Dns.SYSTEM, null, null, new TrafficEngine.Logger() {
+            @Override
+            public void debug(String message) {
+            }
+
+            @Override
+            public void error(String message, Throwable error) {
+            }
+        }, new TrafficEngine.Listener() {
+            @Override
+            public void onRequestSucceeded() {
+                succeeded.incrementAndGet();
+            }
+
+            @Override
+            public void onFrontierExhausted() {
+                exhausted.countDown();
+            }
+        });
+    }
+
+    private TrafficEngine newEngine() throws Exception {
+        return newEngine(newConfig(Collections.singletonList(server.url("/a").toString()), Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void followsLinksToEveryReachablePage() throws Exception {
+        TrafficEngine engine = newEngine();
+        engine.start(executor);
+
+        assertTrue(allPagesRequested.await(10, TimeUnit.SECONDS));
+        assertEquals(3, engine.getFrontier().size()); // Visited pages stay queued for later visits
+        assertTrue(succeeded.get() >= 1); // The links of /a were extracted after its success was reported
+        assertEquals(1, exhausted.getCount());
+        engine.stop();
+    }
+
+    @Test
+    public void zeroThrottlePausesUntilRaised() throws Exception {
+        TrafficEngine engine = newEngine();
+        assertTrue(engine.setThrottle(0));
+        assertFalse(engine.setThrottle(0));
+        engine.start(executor);
+
+        Thread.sleep(300);
+        assertEquals(0, server.getRequestCount());
+
+        engine.setThrottle(1);
+        assertTrue(allPagesRequested.await(10, TimeUnit.SECONDS));
+        engine.stop();
+    }
+
+    @Test
+    public void emptyFrontierIsReported() throws Exception {
+        TrafficEngine engine = newEngine(newConfig(Collections.<String>emptyList(), Collections.<String>emptyList()));
+        engine.start(executor);
+
+        assertTrue(exhausted.await(10, TimeUnit.SECONDS));
+        assertEquals(0, server.getRequestCount());
+        engine.stop();
+    }
+
+    @Test
+    public void reconfigureAppliesNewRulesAndKeepsTheFrontier() throws Exception {
+        List<String> rootUrls = Collections.singletonList(server.url("/a").toString());
+        TrafficEngine engine = newEngine(newConfig(rootUrls, Collections.singletonList("/c")));
+        engine.start(executor);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!requestedPaths.contains("/b") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(requestedPaths.contains("/b"));
+        assertFalse(requestedPaths.contains("/c"));
+        assertEquals(2, engine.getFrontier().size());
+
+        // Lifting the blacklist reaches /c from the URLs already queued; raising the session count adds sessions
+        TrafficConfig reloaded = engine.getConfig().withOverrides("{\"blacklisted_urls\": [], \"sessions\": 4}");
+        engine.reconfigure(reloaded);
+        assertSame(reloaded, engine.getConfig());
+        assertTrue(allPagesRequested.await(10, TimeUnit.SECONDS));
+        assertEquals(3, engine.getFrontier().size());
+        engine.stop();
+    }
+
+    @Test
+    public void reconfigureRebuildsTheThrottlePolicy() throws Exception {
+        TrafficEngine engine = newEngine(newConfig(Collections.<String>emptyList(), Collections.<String>emptyList()));
+        ThrottlePolicy.DeviceState offline = new ThrottlePolicy.DeviceState(false, false, false, 80, false, false);
+        assertEquals(0, engine.applyDeviceState(offline), 0);
+
+        engine.reconfigure(engine.getConfig().withOverrides("{\"adaptive_throttling\": false}"));
+        assertEquals(-1, engine.applyDeviceState(offline), 0); // Back at full rate already
+    }
+
+    @Test
+    public void repeatVisitsWithCachedLinksStillDownloadThePage() throws Exception {
+        TrafficEngine engine = newEngine(newConfig(Collections.singletonList(server.url("/c").toString()), Collections.<String>emptyList()));
+        engine.start(executor);
+
+        // Success is reported before the body is read, so wait for the bytes themselves; a visit whose
+        // body was cancelled on a cache hit never adds them
+        long pageBytes = "<html><body></body></html>".length();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (metrics.getBytesDownloaded() < 5 * pageBytes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        engine.stop();
+        assertTrue(metrics.getBytesDownloaded() >= 5 * pageBytes); // Only the first visit parsed the page
+        assertTrue(metrics.getCallsSucceeded() >= 5);
+        assertEquals(0, metrics.getErrorCount());
+    }
+
+    @Test
+    public void jsoupExtractionKeepsToTheBodyBudget() throws Exception {
+        TrafficConfig config = newConfig(Collections.singletonList(server.url("/a").toString()), Collections.<String>emptyList());
+        // The first 30 bytes of /a hold the link to /b but not the one to /c
+        TrafficEngine engine = newEngine(config.withOverrides("{\"link_extraction\": \"jsoup\", \"max_body_bytes\": 30}"));
+        engine.start(executor);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!requestedPaths.contains("/b") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(requestedPaths.contains("/b"));
+        // /c would have been queued together with /b; give the crawl as many more visits to reach it
+        long visits = metrics.getCallsSucceeded() + 20;
+        while (metrics.getCallsSucceeded() < visits && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        engine.stop();
+        assertFalse(requestedPaths.contains("/c"));
+    }
+}
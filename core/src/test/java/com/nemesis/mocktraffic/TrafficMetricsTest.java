@@ -0,0 +1,50 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrafficMetricsTest {
+    @Test
+    public void histogram_bucketsCoverValuesWithBoundedError() {
+        for (long value = 0; value < 1000000; value += 7) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(value <= upper);
+            assertTrue(upper - value <= Math.max(0, value / 16));
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void histogram_percentilesAreCloseToExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(random.nextInt(100000)); // Uniform over [0, 100000)
+        }
+        assertEquals(100000, histogram.count());
+        assertEquals(50000, histogram.percentile(50), 50000 * 0.07);
+        assertEquals(99000, histogram.percentile(99), 99000 * 0.07);
+        assertTrue(histogram.max() < 100000);
+        assertEquals(50000, histogram.mean(), 1000);
+    }
+
+    @Test
+    public void toJson_reportsErrorsByTypeAndHost() {
+        TrafficMetrics metrics = new TrafficMetrics();
+        metrics.recordSuccess();
+        metrics.recordHttpError("example.com", 429);
+        metrics.recordHttpError("example.com", 429);
+        metrics.recordHttpError("other\"host", 503);
+        assertEquals(3, metrics.getErrorCount());
+        String json = metrics.toJson();
+        assertTrue(json, json.contains("\"calls_succeeded\":1"));
+        assertTrue(json, json.contains("\"errors_by_type\":{\"http_429\":2,\"http_503\":1}"));
+        assertTrue(json, json.contains("\"errors_by_host\":{\"example.com\":2,\"other\\\"host\":1}"));
+    }
+}
@@ -0,0 +1,32 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrafficStatsTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void ratesAndPercentilesCoverOnlyTheIntervalBetweenReadings() {
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            latency.record(1000000); // Slow calls before the interval
+        }
+        TrafficStats earlier = new TrafficStats(SECOND, 100, 50000, 0, 3, 10, latency.copyCounts());
+        for (int i = 0; i < 98; i++) {
+            latency.record(10000);
+        }
+        latency.record(200000);
+        latency.record(200000);
+        TrafficStats later = new TrafficStats(3 * SECOND, 300, 250000, 50, 5, 40, latency.copyCounts());
+
+        assertEquals(100, later.requestsPerSecondSince(earlier), 1e-9);
+        assertEquals(100000, later.bytesPerSecondSince(earlier), 1e-9);
+        assertEquals(0.2, later.errorRateSince(earlier), 1e-9);
+        assertEquals(10000, later.latencyPercentileSince(earlier, 50), 10000 * 0.07);
+        assertEquals(200000, later.latencyPercentileSince(earlier, 99), 200000 * 0.07);
+        assertEquals(0, earlier.latencyPercentileSince(earlier, 99));
+        assertTrue(later.describeSince(earlier), later.describeSince(earlier).startsWith("100 req/s, 97.7 KiB/s\nIn flight: 5, frontier: 40"));
+    }
+}
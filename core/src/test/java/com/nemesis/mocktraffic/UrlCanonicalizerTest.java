@@ -0,0 +1,45 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_STRIPPED_PARAMS);
+
+    @Test
+    public void canonicalize_normalizesHostPortPathAndFragment() {
+        assertEquals("https://example.com/", canonicalizer.canonicalize("HTTPS://Example.COM:443"));
+        assertEquals("http://example.com/a", canonicalizer.canonicalize("http://example.com:80/a#section"));
+        assertEquals("http://example.com:8080/a", canonicalizer.canonicalize(" http://example.com:8080/a "));
+        assertNull(canonicalizer.canonicalize("mailto:someone@example.com"));
+        assertNull(canonicalizer.canonicalize("not a url"));
+    }
+
+    @Test
+    public void canonicalize_stripsTrackingParamsInPlace() {
+        assertEquals("https://example.com/p?id=3&sort=new",
+                canonicalizer.canonicalize("https://example.com/p?utm_source=x&id=3&FBCLID=y&sort=new&utm_medium=z#top"));
+        assertEquals("https://example.com/p", canonicalizer.canonicalize("https://example.com/p?utm_source=x&gclid=1"));
+        assertEquals("https://example.com/p?q=a%20b", canonicalizer.canonicalize("https://example.com/p?q=a%20b"));
+        assertEquals("https://example.com/p?utm=keep", canonicalizer.canonicalize("https://example.com/p?utm=keep"));
+    }
+
+    @Test
+    public void canonicalize_usesConfiguredParams() {
+        UrlCanonicalizer custom = new UrlCanonicalizer(Arrays.asList("session*", "ref"));
+        assertEquals("https://example.com/?utm_source=x",
+                custom.canonicalize("https://example.com/?sessionid=1&utm_source=x&ref=home"));
+    }
+
+    @Test
+    public void variantKey_foldsSchemeWwwAndTrailingSlash() {
+        String key = UrlCanonicalizer.variantKey("https://example.com/news");
+        assertEquals(key, UrlCanonicalizer.variantKey("http://www.example.com/news/"));
+        assertEquals(UrlCanonicalizer.variantKey("https://example.com/"), UrlCanonicalizer.variantKey("http://www.example.com/"));
+        assertNotEquals(key, UrlCanonicalizer.variantKey("https://example.com/news?page=2"));
+        assertNotEquals(key, UrlCanonicalizer.variantKey("https://m.example.com/news"));
+    }
+}
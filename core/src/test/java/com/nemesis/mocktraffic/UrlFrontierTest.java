@@ -0,0 +1,200 @@
+package com.nemesis.mocktraffic;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class UrlFrontierTest {
+    private final Random random = new Random(42);
+
+    @Test
+    public void add_rejectsDuplicates() {
+        UrlFrontier frontier = new UrlFrontier();
+        assertTrue(frontier.add("https://example.com/a", 0, random));
+        assertTrue(frontier.add("https://example.com/b", 1, random));
+        assertFalse(frontier.add("https://example.com/a", 2, random));
+        assertEquals(2, frontier.size());
+        assertTrue(frontier.isSeen("https://example.com/b"));
+        assertFalse(frontier.isSeen("https://example.com/c"));
+    }
+
+    @Test
+    public void randomEntry_returnsOnlyAddedUrls() {
+        UrlFrontier frontier = new UrlFrontier(100000);
+        assertNull(frontier.randomEntry(random));
+        Set<String> added = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            String url = "https://example.com/page/" + i;
+            frontier.add(url, 3, random);
+            added.add(url);
+        }
+        assertEquals(5000, frontier.size());
+        for (int i = 0; i < 100; i++) {
+            UrlFrontier.Entry entry = frontier.randomEntry(random);
+            assertTrue(added.contains(entry.url));
+            assertEquals(3, entry.depth);
+        }
+    }
+
+    @Test
+    public void add_evictsOnceCapacityIsReached() {
+        UrlFrontier frontier = new UrlFrontier(160);
+        for (int i = 0; i < 10000; i++) {
+            frontier.add("https://example.com/page/" + i, 0, random);
+        }
+        assertEquals(160, frontier.size());
+        // The most recent URLs are still remembered as seen even after being evicted
+        assertTrue(frontier.isSeen("https://example.com/page/9999"));
+        assertFalse(frontier.add("https://example.com/page/9998", 0, random));
+    }
+
+    @Test
+    public void add_evictsFromDominantHostAndDropsEmptyHosts() {
+        UrlFrontier frontier = new UrlFrontier(100);
+        for (int i = 0; i < 5; i++) {
+            frontier.add("https://small" + i + ".example/", 0, random);
+        }
+        for (int i = 0; i < 1000; i++) {
+            frontier.add("https://big.example/page/" + i, 1, random);
+        }
+        assertEquals(100, frontier.size());
+        assertEquals(6, frontier.hostCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("https://small" + i + ".example/", frontier.randomEntry("small" + i + ".example", random).url);
+        }
+
+        UrlFrontier oneEach = new UrlFrontier(10);
+        for (int i = 0; i < 100; i++) {
+            oneEach.add("https://host" + i + ".example/", 0, random);
+        }
+        assertEquals(10, oneEach.size());
+        assertEquals(10, oneEach.hostCount());
+        for (int i = 0; i < oneEach.hostCount(); i++) {
+            assertNotNull(oneEach.randomEntry(oneEach.hostAt(i), random));
+        }
+    }
+
+    @Test
+    public void concurrentAddAndSample_neverFailsOrLosesCount() throws InterruptedException {
+        final UrlFrontier frontier = new UrlFrontier(1000000);
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int threadId = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random threadRandom = new Random(threadId);
+                        for (int i = 0; i < 20000; i++) {
+                            // Half the URLs overlap between threads so that duplicates race each other
+                            int page = i % 2 == 0 ? i : threadId * 1000000 + i;
+                            if (frontier.add("https://example.com/" + page, 0, threadRandom)) {
+                                added.incrementAndGet();
+                            }
+                            frontier.randomEntry(threadRandom);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(10000 + 8 * 10000, added.get());
+        assertEquals(added.get(), frontier.size());
+    }
+
+    @Test
+    public void concurrentEvictions_keepTheFrontierAtCapacity() throws InterruptedException {
+        final UrlFrontier frontier = new UrlFrontier(500);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int threadId = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random threadRandom = new Random(threadId);
+                        for (int i = 0; i < 20000; i++) {
+                            // Many small hosts, so evictions keep emptying hosts other threads picked too
+                            frontier.add("https://h" + threadRandom.nextInt(400) + ".example/" + threadId + "/" + i, 0, threadRandom);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(500, frontier.size());
+        final AtomicInteger queued = new AtomicInteger();
+        frontier.snapshot(new UrlFrontier.Visitor() {
+            @Override
+            public void visitEntry(UrlFrontier.Entry entry) {
+                queued.incrementAndGet();
+            }
+
+            @Override
+            public void visitSeen(long fingerprint) {
+            }
+        });
+        assertEquals(500, queued.get());
+    }
+
+    @Test
+    public void randomEntry_favoursWeightedEntries() {
+        UrlFrontier frontier = new UrlFrontier();
+        frontier.add(new UrlFrontier.Entry("https://example.com/seed", 0, 4), random);
+        frontier.add("https://example.com/a", 1, random);
+        frontier.add("https://other.example/b", 1, random);
+        int seedPicks = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (frontier.randomEntry("example.com", random).weight == 4) {
+                seedPicks++;
+            }
+        }
+        assertEquals(8000, seedPicks, 300); // Four tickets out of five
+        assertEquals(4, frontier.hostWeight("example.com"));
+        assertEquals(1, frontier.hostWeight("other.example"));
+    }
+
+    @Test
+    public void evictingWeightedEntry_clearsHostWeight() {
+        UrlFrontier frontier = new UrlFrontier(1);
+        frontier.add(new UrlFrontier.Entry("https://example.com/seed", 0, 3), random);
+        frontier.add("https://example.com/a", 1, random); // Over capacity: one of the two is evicted
+        assertEquals(1, frontier.size());
+        UrlFrontier.Entry left = frontier.randomEntry("example.com", random);
+        assertEquals(left.weight, frontier.hostWeight("example.com"));
+    }
+
+    @Test
+    public void longHashSet_growsPastInitialCapacity() {
+        LongHashSet set = new LongHashSet(16);
+        for (long i = 1; i <= 10000; i++) {
+            assertTrue(set.add(i * 0x9E3779B97F4A7C15L));
+        }
+        assertEquals(10000, set.size());
+        for (long i = 1; i <= 10000; i++) {
+            assertTrue(set.contains(i * 0x9E3779B97F4A7C15L));
+        }
+        assertFalse(set.contains(12345L));
+    }
+}
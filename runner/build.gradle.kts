@@ -0,0 +1,20 @@
+// Headless load harness: runs the :core TrafficEngine on the JVM against a synthetic site served
+// by a local MockWebServer. Run with ./gradlew :runner:run --args="--seconds=30 --rps=2000".
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.json) // Provided by Android on the device
+    implementation(libs.mockwebserver)
+}
+
+application {
+    mainClass.set("com.nemesis.mocktraffic.TrafficRunner")
+}
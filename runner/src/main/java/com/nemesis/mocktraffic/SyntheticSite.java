@@ -0,0 +1,106 @@
+package com.nemesis.mocktraffic;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.RecordedRequest;
+import okhttp3.Dns;
+
+// A synthetic web served by one MockWebServer for the runner.
+// Page n lives on virtual host "h<n % hostCount>.test" and links to linksPerPage other pages drawn
+// from a generator seeded with n, so the link graph is the same on every run without being stored.
+// Every virtual host resolves to the loopback address through dns(), which spreads the crawl over
+// several hosts for the host scheduler and connection pool while all requests reach one server.
+public class SyntheticSite extends Dispatcher {
+
+    static final String HOST_SUFFIX = ".test";
+    private static final String PAGE_PATH = "/page/";
+
+    private final int port;
+    private final int pageCount;
+    private final int hostCount;
+    private final int linksPerPage;
+    private final int paddingBytes;
+
+    public SyntheticSite(int port, int pageCount, int hostCount, int linksPerPage, int paddingBytes) {
+        this.port = port;
+        this.pageCount = Math.max(1, pageCount);
+        this.hostCount = Math.max(1, hostCount);
+        this.linksPerPage = Math.max(0, linksPerPage);
+        this.paddingBytes = Math.max(0, paddingBytes);
+    }
+
+    // Absolute URL of a page
+    public String pageUrl(int page) {
+        return "http://h" + (page % hostCount) + HOST_SUFFIX + ":" + port + PAGE_PATH + page;
+    }
+
+    // The crawl starts from page 0, which every page can be reached from through its links
+    public List<String> rootUrls() {
+        return Collections.singletonList(pageUrl(0));
+    }
+
+    // Resolves the virtual hosts to loopback and refuses everything else, so a run never leaves the machine
+    public static Dns dns() {
+        return new Dns() {
+            @Override
+            public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+                if (!hostname.toLowerCase(Locale.ROOT).endsWith(HOST_SUFFIX)) {
+                    throw new UnknownHostException(hostname + " is not a synthetic host");
+                }
+                return Collections.singletonList(InetAddress.getLoopbackAddress());
+            }
+        };
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        int page = path != null && path.startsWith(PAGE_PATH) ? parsePage(path.substring(PAGE_PATH.length())) : -1;
+        if (page < 0) {
+            return new MockResponse.Builder().code(404).build();
+        }
+        if ("HEAD".equals(request.getMethod())) {
+            return new MockResponse.Builder()
+                    .addHeader("Content-Type", "text/html; charset=utf-8")
+                    .build();
+        }
+        return new MockResponse.Builder()
+                .addHeader("Content-Type", "text/html; charset=utf-8")
+                .body(renderPage(page))
+                .build();
+    }
+
+    // HTML of a page: a title, its links and optional filler text
+    String renderPage(int page) {
+        StringBuilder html = new StringBuilder(256 + linksPerPage * 64 + paddingBytes);
+        html.append("<html><head><title>Page ").append(page).append("</title></head><body>\n");
+        SplittableRandom random = new SplittableRandom(page);
+        for (int i = 0; i < linksPerPage; i++) {
+            // Link to the next page first so that the graph is connected, then to random pages
+            int target = i == 0 ? (page + 1) % pageCount : random.nextInt(pageCount);
+            html.append("<a href=\"").append(pageUrl(target)).append("\">Page ").append(target).append("</a>\n");
+        }
+        html.append("<p>");
+        for (int i = 0; i < paddingBytes; i++) {
+            html.append((char) ('a' + i % 26));
+        }
+        html.append("</p></body></html>\n");
+        return html.toString();
+    }
+
+    private int parsePage(String number) {
+        try {
+            int page = Integer.parseInt(number);
+            return page < pageCount ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
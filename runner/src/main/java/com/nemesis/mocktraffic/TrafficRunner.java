@@ -0,0 +1,235 @@
+package com.nemesis.mocktraffic;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import mockwebserver3.MockWebServer;
+
+// Command line load harness: runs the TrafficEngine on the plain JVM against a SyntheticSite served
+// by a local MockWebServer, prints the achieved rate once a second and the full metrics JSON at the
+// end. Exits with status 1 if the average rate stays below --min-rps, so CI can catch regressions.
+//
+//   ./gradlew :runner:run --args="--seconds=30 --rps=2000 --sessions=64"
+//
+// Options, all --name=value: seconds, rps, sessions, pages, hosts, links, padding, min-rps,
+// config (a config.json whose settings replace the runner defaults; its root URLs are ignored;
+// edits to it are applied to the running engine within a second) and --verbose to print the
+// engine's per-request log.
+public class TrafficRunner {
+
+    private static final String USAGE = "Usage: TrafficRunner [--seconds=30] [--rps=1000] [--sessions=32] [--pages=100000]"
+            + " [--hosts=16] [--links=20] [--padding=2048] [--min-rps=0] [--config=config.json] [--verbose]";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        System.exit(run(options));
+    }
+
+    // Run one load test and return the process exit status
+    static int run(Map<String, String> options) throws IOException, JSONException, InterruptedException {
+        int seconds = intOption(options, "seconds", 30);
+        int rps = intOption(options, "rps", 1000);
+        double minRps = intOption(options, "min-rps", 0);
+        final boolean verbose = options.containsKey("verbose");
+
+        if (!verbose) {
+            // Cancelled calls leave connections that never made a request, which MockWebServer warns about
+            java.util.logging.Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.SEVERE);
+        }
+        MockWebServer server = new MockWebServer();
+        server.start(InetAddress.getLoopbackAddress(), 0);
+        SyntheticSite site = new SyntheticSite(server.getPort(), intOption(options, "pages", 100000),
+                intOption(options, "hosts", 16), intOption(options, "links", 20), intOption(options, "padding", 2048));
+        server.setDispatcher(site);
+        Thread drainer = startRequestDrainer(server);
+
+        TrafficConfig config = TrafficConfig.fromJson(buildConfig(options, site, rps).toString());
+        TrafficMetrics metrics = new TrafficMetrics();
+        final CountDownLatch exhausted = new CountDownLatch(1);
+        TrafficEngine engine = new TrafficEngine(config, metrics, SyntheticSite.dns(), null, null, new TrafficEngine.Logger() {
+            @Override
+            public void debug(String message) {
+                if (verbose) {
+                    System.err.println(message);
+                }
+            }
+
+            @Override
+            public void error(String message, Throwable error) {
+                if (verbose) {
+                    System.err.println(message + (error != null ? ": " + error : ""));
+                }
+            }
+        }, new TrafficEngine.Listener() {
+            @Override
+            public void onRequestSucceeded() {
+                // Counted by TrafficMetrics
+            }
+
+            @Override
+            public void onFrontierExhausted() {
+                exhausted.countDown();
+            }
+        });
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        System.out.println("Crawling " + site.rootUrls().get(0) + " with " + config.sessionCount + " sessions at up to "
+                + rps + " req/s for " + seconds + " s");
+        long startNanos = System.nanoTime();
+        engine.start(executor);
+
+        String configPath = options.get("config");
+        long configModified = configPath != null ? new File(configPath).lastModified() : 0;
+        TrafficStats last = TrafficStats.capture(metrics, engine);
+        for (int second = 1; second <= seconds; second++) {
+            boolean done = exhausted.await(1, TimeUnit.SECONDS);
+            if (configPath != null && new File(configPath).lastModified() != configModified) {
+                configModified = new File(configPath).lastModified();
+                reloadConfig(engine, options, site, rps);
+            }
+            TrafficStats stats = TrafficStats.capture(metrics, engine);
+            System.out.println(String.format(Locale.ROOT, "%4ds %8.0f req/s %8.1f KiB/s  p99 %5d ms  in flight %4d  frontier %7d  errors %d",
+                    second, stats.requestsPerSecondSince(last), stats.bytesPerSecondSince(last) / 1024,
+                    stats.latencyPercentileSince(last, 99) / 1000, stats.inFlight, stats.frontierSize, stats.errors));
+            last = stats;
+            if (done) {
+                System.out.println("Frontier exhausted");
+                break;
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        engine.stop();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        drainer.interrupt();
+        server.shutdown();
+
+        double averageRps = metrics.getCallsSucceeded() / elapsedSeconds;
+        System.out.println(metrics.toJson());
+        System.out.println(String.format(Locale.ROOT, "%d requests in %.1f s: %.1f req/s, %d errors, %d served",
+                metrics.getCallsSucceeded(), elapsedSeconds, averageRps, metrics.getErrorCount(), server.getRequestCount()));
+        if (averageRps < minRps) {
+            System.out.println(String.format(Locale.ROOT, "FAILED: %.1f req/s is below --min-rps=%.0f", averageRps, minRps));
+            return 1;
+        }
+        return 0;
+    }
+
+    // Apply an edited --config file to the running engine; a file that does not parse is reported and skipped
+    private static void reloadConfig(TrafficEngine engine, Map<String, String> options, SyntheticSite site, int rps) {
+        try {
+            engine.reconfigure(TrafficConfig.fromJson(buildConfig(options, site, rps).toString()));
+            System.out.println("Reloaded " + options.get("config"));
+        } catch (IOException | JSONException e) {
+            System.out.println("Not reloading " + options.get("config") + ": " + e.getMessage());
+        }
+    }
+
+    // Runner defaults, then the --config file, then the synthetic root URL and the rate and session flags
+    static JSONObject buildConfig(Map<String, String> options, SyntheticSite site, int rps) throws IOException, JSONException {
+        JSONObject json = new JSONObject();
+        json.put("max_depth", 1000);
+        json.put("min_sleep", 0);
+        json.put("max_sleep", 100); // Session start stagger
+        json.put("timeout", 10000);
+        json.put("frontier_capacity", 10000);
+        json.put("sessions", 32);
+        json.put("max_requests", 256);
+        json.put("max_requests_per_host", 64);
+        json.put("max_idle_connections", 64);
+        json.put("max_in_flight", 256);
+        json.put("host_burst", 100);
+        json.put("dns_queries_per_second", 0);
+        json.put("adaptive_throttling", false);
+        json.put("target_latency_ms", 1000);
+        json.put("pacing_jitter_percent", 10);
+        String configPath = options.get("config");
+        if (configPath != null) {
+            JSONObject file = new JSONObject(new String(Files.readAllBytes(new File(configPath).toPath()), StandardCharsets.UTF_8));
+            for (String key : file.keySet()) {
+                json.put(key, file.get(key));
+            }
+        }
+        json.put("root_urls", new JSONArray(site.rootUrls()));
+        if (!json.has("blacklisted_urls")) {
+            json.put("blacklisted_urls", new JSONArray());
+        }
+        if (options.containsKey("sessions")) {
+            json.put("sessions", intOption(options, "sessions", 32));
+        }
+        if (configPath == null || options.containsKey("rps")) {
+            json.put("target_requests_per_minute", rps * 60);
+            json.put("host_requests_per_minute", rps * 60); // The rate is set by pacing, not per host
+        }
+        return json;
+    }
+
+    // MockWebServer records every request for takeRequest(); discard them so a long run does not fill the heap
+    private static Thread startRequestDrainer(final MockWebServer server) {
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        server.takeRequest();
+                    }
+                } catch (InterruptedException e) {
+                    // Run finished
+                }
+            }
+        }, "RecordedRequestDrainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        return drainer;
+    }
+
+    // Parse --name=value and --flag arguments; null if one is malformed
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                return null;
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int fallback) {
+        String value = options.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " needs a number, got " + value);
+        }
+    }
+}
@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "MockTraffic"
 include(":app")
+include(":core")
+include(":benchmark")
+include(":runner")